@@ -0,0 +1,67 @@
+package gitsync.benchmark;
+
+import gitsync.RepoService;
+import gitsync.backend.CliBackend;
+import gitsync.utils.OutputReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of forking a process and draining its output, as every CLI git operation does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandExecutionBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int lines;
+
+    private byte[] output;
+    private String[] command;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < this.lines; i++) {
+            builder.append(String.format(" create mode 100644 data/%03d/entry-%d.yml%n", i / 100, i));
+        }
+        this.output = builder.toString().getBytes(StandardCharsets.UTF_8);
+        // Half of the lines on stdout and half on stderr, like git mixing results and progress.
+        this.command = new String[]{"sh", "-c", String.format("seq 1 %d; seq 1 %d >&2", this.lines / 2, this.lines - this.lines / 2)};
+    }
+
+    @Benchmark
+    public List<String> executeCommand() {
+        return RepoService.executeCommand(this.command);
+    }
+
+    @Benchmark
+    public List<String> executeCommandConsumingLines(Blackhole blackhole) {
+        return CliBackend.execute(new ProcessBuilder(this.command), blackhole::consume).getOutput();
+    }
+
+    @Benchmark
+    public List<String> outputReader(Blackhole blackhole) throws InterruptedException {
+        OutputReader reader = new OutputReader(new ByteArrayInputStream(this.output), blackhole::consume, CliBackend.OUTPUT_TAIL_LINES);
+        reader.run();
+        return reader.getOutput();
+    }
+}
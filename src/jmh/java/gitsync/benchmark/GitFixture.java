@@ -0,0 +1,85 @@
+package gitsync.benchmark;
+
+import gitsync.Repository;
+import gitsync.backend.BackendType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A throwaway bare remote with a working clone of it, filled with generated plugin files.
+ */
+class GitFixture {
+    final Path root;
+    final File remote;
+    final File directory;
+    final Repository repository;
+    private int revision;
+
+    GitFixture(int files, BackendType backend) throws IOException {
+        this.root = Files.createTempDirectory("gitsync-bench");
+        this.remote = this.root.resolve("remote.git").toFile();
+        this.directory = this.root.resolve("plugin").toFile();
+
+        git(this.root.toFile(), "init", "-q", "--bare", "-b", "master", this.remote.getAbsolutePath());
+        git(this.root.toFile(), "init", "-q", "-b", "master", this.directory.getAbsolutePath());
+        git(this.directory, "config", "user.name", "GitSync");
+        git(this.directory, "config", "user.email", "gitsync@regulad.xyz");
+        git(this.directory, "remote", "add", "origin", "file://" + this.remote.getAbsolutePath());
+        for (int i = 0; i < files; i++) {
+            // Spread over directories like real plugin data, 100 files each.
+            Path file = this.directory.toPath().resolve(String.format("data/%03d/entry-%d.yml", i / 100, i));
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, String.format("id: %d%nname: entry-%d%nvalue: %d%n", i, i, i * 31));
+        }
+        git(this.directory, "add", ".");
+        git(this.directory, "commit", "-q", "-m", "seed");
+        git(this.directory, "push", "-q", "--set-upstream", "origin", "master");
+
+        this.repository = Repository.builder()
+                .name("benchmark")
+                .enabled(true)
+                .remote("file://" + this.remote.getAbsolutePath())
+                .directory(this.directory)
+                .backend(backend)
+                .build();
+    }
+
+    /**
+     * Commits a change of one file, like the server would have written between two syncs.
+     */
+    void commitLocalChange() throws IOException {
+        Files.writeString(this.directory.toPath().resolve("config.yml"), String.format("revision: %d%n", ++this.revision));
+        git(this.directory, "add", "config.yml");
+        git(this.directory, "commit", "-q", "-m", "'[server update]'");
+    }
+
+    void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    static void git(File directory, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(List.of(args));
+        try {
+            Process process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            if (process.waitFor() != 0) {
+                throw new IOException(String.format("%s failed in %s", String.join(" ", command), directory));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
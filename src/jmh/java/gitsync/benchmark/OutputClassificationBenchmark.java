@@ -0,0 +1,70 @@
+package gitsync.benchmark;
+
+import gitsync.RepoService;
+import gitsync.backend.GitOutcome;
+import gitsync.backend.GitResult;
+import gitsync.backend.OutcomeParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of telling what a git command did from its output, with the result message after lots of other lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputClassificationBenchmark {
+    @Param({"10", "200", "10000"})
+    public int lines;
+
+    private List<String> pullOutput;
+    private GitResult pullResult;
+    private GitResult pushResult;
+
+    @Setup
+    public void setup() {
+        this.pullOutput = new ArrayList<>();
+        for (int i = 0; i < this.lines; i++) {
+            this.pullOutput.add(String.format(" data/%03d/entry-%d.yml | 2 +-", i / 100, i));
+        }
+        this.pullOutput.add("Automatic merge failed; fix conflicts and then commit the result.");
+        this.pullResult = new GitResult(1, this.pullOutput);
+
+        List<String> pushOutput = new ArrayList<>();
+        pushOutput.add("To file:///srv/remote.git");
+        pushOutput.add("=\trefs/heads/master:refs/heads/master\t[up to date]");
+        pushOutput.add("Done");
+        this.pushResult = new GitResult(0, pushOutput);
+    }
+
+    @Benchmark
+    public boolean isOutputContains() {
+        return RepoService.isOutputContains(this.pullOutput, "Automatic merge failed");
+    }
+
+    @Benchmark
+    public GitOutcome classifyPull() {
+        return OutcomeParser.pull(this.pullResult, true);
+    }
+
+    @Benchmark
+    public GitOutcome classifyPush() {
+        return OutcomeParser.push(this.pushResult);
+    }
+}
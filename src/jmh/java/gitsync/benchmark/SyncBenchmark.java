@@ -0,0 +1,67 @@
+package gitsync.benchmark;
+
+import gitsync.RepoService;
+import gitsync.backend.BackendType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * End-to-end sync of a repository against a local file:// bare remote, one changed file per sync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SyncBenchmark {
+    @Param({"10", "1000", "50000"})
+    public int files;
+
+    @Param({"CLI", "JGIT"})
+    public BackendType backend;
+
+    private GitFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Git output is logged line by line, that is not what is measured here.
+        Logger.getLogger("GitSync").setLevel(java.util.logging.Level.SEVERE);
+        this.fixture = new GitFixture(this.files, this.backend);
+    }
+
+    @Setup(Level.Invocation)
+    public void change() throws IOException {
+        this.fixture.commitLocalChange();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.fixture.delete();
+    }
+
+    @Benchmark
+    public boolean favorableSync() {
+        return RepoService.favorableSync(this.fixture.repository);
+    }
+
+    @Benchmark
+    public void unfavorableSync() {
+        RepoService.unfavorableSync(this.fixture.repository);
+    }
+}
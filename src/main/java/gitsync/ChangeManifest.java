@@ -0,0 +1,200 @@
+package gitsync;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Remembers size, modification time and content hash of every file of a repository's working tree, so unchanged repositories can skip git entirely.
+ * Files are only rehashed when their size or modification time changed, or when they were modified at or after the last scan started,
+ * a write in the same timestamp tick as the scan would otherwise go unnoticed, like git's racy index entries.
+ */
+public class ChangeManifest {
+    private static final int FORMAT_VERSION = 2;
+    private static final Map<String, ChangeManifest> MANIFESTS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final File directory;
+    private volatile Repository repository;
+    private Map<String, Entry> entries = new HashMap<>();
+    /**
+     * When the last scan started, floored to the second as file systems may keep modification times that coarse.
+     */
+    private long scannedAt;
+    /**
+     * Commit local and remote master both pointed to after the last complete sync, {@code null} if they were not in sync.
+     */
+    @Getter
+    @Setter
+    private String remoteHead;
+
+    private ChangeManifest(File file, File directory) {
+        this.file = file;
+        this.directory = directory;
+    }
+
+    public static ChangeManifest of(Repository repository) {
+        ChangeManifest manifest = MANIFESTS.computeIfAbsent(repository.getName(), (name) -> {
+            File file = new File(new File(RepoService.getDataFolder(), "manifests"), name + ".manifest");
+            ChangeManifest created = new ChangeManifest(file, repository.getDirectory());
+            created.load();
+            return created;
+        });
+        // Synced paths of a monorepo and exclusions change with the config.
+        manifest.repository = repository;
+        return manifest;
+    }
+
+    private static long hash(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Scans the working tree and updates the manifest.
+     * Files git would not pick up are left out, see {@link ExclusionRules}, databases and logs written all the time would otherwise never let a sync be skipped.
+     * @return If any file was added, removed or had its content changed since the last scan.
+     */
+    public boolean refresh() throws IOException {
+        Repository repository = this.repository;
+        Path root = this.directory.toPath();
+        long racyAfter = this.scannedAt;
+        long now = System.currentTimeMillis();
+        this.scannedAt = now - now % 1000L;
+        Map<String, Entry> scanned = new HashMap<>(this.entries.size());
+        boolean[] changed = {false};
+        ExclusionRules rules = ExclusionRules.of(repository);
+
+        SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<>() {
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                return dir.getFileName().toString().equals(".git") || rules.skipsDirectory(root.relativize(dir)) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile() || rules.skipsFile(root.relativize(path), attrs.size())) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+                long modified = attrs.lastModifiedTime().toMillis();
+                Entry known = ChangeManifest.this.entries.get(relative);
+                if (known != null && known.size == attrs.size() && known.modified == modified && modified < racyAfter) {
+                    scanned.put(relative, known);
+                } else {
+                    long hash = hash(path);
+                    changed[0] |= known == null || known.hash != hash;
+                    scanned.put(relative, new Entry(attrs.size(), modified, hash));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                // Files deleted while walking are simply missing from the new manifest.
+                return FileVisitResult.CONTINUE;
+            }
+        };
+        for (Path path : repository.trackedRoots()) {
+            if (Files.exists(path)) {
+                Files.walkFileTree(path, visitor);
+            }
+        }
+
+        if (!changed[0]) {
+            changed[0] = !scanned.keySet().containsAll(this.entries.keySet());
+        }
+        this.entries = scanned;
+        return changed[0];
+    }
+
+    /**
+     * Forgets everything, so the next scan reports the whole tree as changed.
+     */
+    public void invalidate() {
+        this.entries = new HashMap<>();
+        this.scannedAt = 0L;
+        this.remoteHead = null;
+    }
+
+    private void load() {
+        if (!this.file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file.toPath())))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+
+            String head = in.readUTF();
+            long scannedAt = in.readLong();
+            int count = in.readInt();
+            Map<String, Entry> loaded = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                loaded.put(in.readUTF(), new Entry(in.readLong(), in.readLong(), in.readLong()));
+            }
+            this.remoteHead = head.isEmpty() ? null : head;
+            this.scannedAt = scannedAt;
+            this.entries = loaded;
+        } catch (IOException e) {
+            RepoService.getLogger().warning(String.format("Cannot read change manifest %s, all files will be treated as changed", this.file.getName()));
+        }
+    }
+
+    public void save() {
+        File temp = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+        try {
+            Files.createDirectories(this.file.getParentFile().toPath());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(this.remoteHead == null ? "" : this.remoteHead);
+                out.writeLong(this.scannedAt);
+                out.writeInt(this.entries.size());
+                for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().size);
+                    out.writeLong(entry.getValue().modified);
+                    out.writeLong(entry.getValue().hash);
+                }
+            }
+            Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            RepoService.getLogger().warning(String.format("Cannot save change manifest %s", this.file.getName()));
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final long hash;
+
+        private Entry(long size, long modified, long hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+}
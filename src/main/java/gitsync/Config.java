@@ -1,46 +1,326 @@
 package gitsync;
 
+import lombok.Builder;
 import lombok.Getter;
-import lombok.Setter;
+import lombok.Singular;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
+/**
+ * Immutable snapshot of config.yml. A reload builds a whole new snapshot and swaps it in at once,
+ * so readers on any thread see either the old or the new config, never a mix.
+ * Tasks run through {@link RepoExecutor} are {@link #pin pinned} to the snapshot they started with, so a reload in the middle of a sync does not change its settings partway.
+ */
 public class Config {
-    private static Config instance;
+    private static volatile Config instance = builder().build();
+    private static final ThreadLocal<Config> PINNED = new ThreadLocal<>();
 
     @Getter
-    @Setter
-    private List<Repository> repositories = new ArrayList<>();
-    private Scenario scenarioWhileDailySync;
+    private final List<Repository> repositories;
+    @Getter
+    private final Scenario scenarioWhileDailySync;
+    @Getter
+    private final int workerThreads;
+    @Getter
+    private final int syncParallelism;
+    /**
+     * Minutes between two scheduled syncs of a repository, 0 disables the scheduler.
+     */
+    @Getter
+    private final long syncInterval;
+    /**
+     * Maximum random delay in seconds added to every scheduled sync.
+     */
+    @Getter
+    private final long syncJitter;
+    /**
+     * How many remotes, origin and mirrors together, have to take a push for it to count as successful, 0 for all of them.
+     */
+    @Getter
+    private final int syncQuorum;
+    /**
+     * Hours between two maintenance runs of a repository, 0 disables maintenance.
+     */
+    @Getter
+    private final long maintenanceInterval;
+    /**
+     * Maintenance only runs while at most this many players are online.
+     */
+    @Getter
+    private final int maintenanceMaxPlayers;
+    /**
+     * Packs are consolidated into one once a repository has this many.
+     */
+    @Getter
+    private final int maintenanceMaxPacks;
+    /**
+     * Files larger than this many MiB are kept out of git, 0 disables the limit.
+     */
+    @Getter
+    private final long exclusionMaxFileSize;
+    /**
+     * .gitignore patterns added to every repository.
+     */
+    @Getter
+    private final List<String> exclusionPatterns;
+    /**
+     * New local repos of plugins with a remote are cloned from it instead of being initialized empty.
+     */
+    @Getter
+    private final boolean bootstrapEnabled;
+    /**
+     * Commits fetched by the bootstrap clone, 0 for the whole history.
+     */
+    @Getter
+    private final int bootstrapDepth;
+    /**
+     * Partial clone filter of the bootstrap clone, empty for none.
+     */
+    @Getter
+    private final String bootstrapFilter;
 
-    private Config() {
-    }
+    /**
+     * How much of git goes to the console, the full output always goes to the log files.
+     */
+    @Getter
+    private final Verbosity loggingVerbosity;
+    /**
+     * Git log files are rotated once they reach this many MiB.
+     */
+    @Getter
+    private final long loggingMaxFileSize;
+    /**
+     * Git log files kept per repository, including the current one.
+     */
+    @Getter
+    private final int loggingMaxFiles;
+    /**
+     * Seconds a local git command may run before it is killed, 0 for no limit.
+     */
+    @Getter
+    private final long timeoutLocal;
+    /**
+     * Seconds a git command talking to the remote may run before it is killed, 0 for no limit.
+     */
+    @Getter
+    private final long timeoutNetwork;
+    /**
+     * Seconds each step of maintenance may run before it is killed, 0 for no limit.
+     */
+    @Getter
+    private final long timeoutMaintenance;
+    /**
+     * If changes are committed from a snapshot of the working tree, see {@link SnapshotStage}. Off unless enabled, copying costs disk space and time.
+     */
+    @Getter
+    private final boolean stagingEnabled;
+    /**
+     * Minutes a server update commit keeps getting the following server updates amended into it, 0 to always make a new commit.
+     */
+    @Getter
+    private final long historyAmendWindow;
+    /**
+     * Days after which consecutive server update commits are squashed into one by maintenance, 0 to keep them.
+     */
+    @Getter
+    private final long historySquashAfter;
+    /**
+     * Niceness git processes are started with, 0 to leave it.
+     */
+    @Getter
+    private final int throttleNice;
+    @Getter
+    private final IoClass throttleIoClass;
+    /**
+     * Priority within the best effort I/O class, from 0 (highest) to 7.
+     */
+    @Getter
+    private final int throttleIoLevel;
+    /**
+     * Threads git may use for packing and index operations, 0 for its own choice.
+     */
+    @Getter
+    private final int throttleGitThreads;
+    /**
+     * CPUs git processes may run on in {@code taskset} list format like {@code 2-3}, empty for any.
+     */
+    @Getter
+    private final String throttleCpus;
+    /**
+     * Git processes that may run at once across all repositories, 0 for no limit.
+     */
+    @Getter
+    private final int throttleMaxProcesses;
+    /**
+     * Id of this server within a network sharing remotes, it pushes to {@code server/<id>} instead of {@code master}. Empty outside of a network.
+     */
+    @Getter
+    private final String networkNode;
+    /**
+     * If this server merges the branches of all nodes into {@code master}.
+     */
+    @Getter
+    private final boolean networkCoordinator;
+    /**
+     * Minutes between two merges of node branches by the coordinator.
+     */
+    @Getter
+    private final long networkMergeInterval;
+    /**
+     * If repositories borrow objects from a store shared by all of them, see {@link ObjectStore}.
+     */
+    @Getter
+    private final boolean objectsShared;
+    private final Map<String, Repository> repositoriesByName;
+    private final NavigableSet<String> enabledNames;
+    private final NavigableSet<String> enabledNamesWithRemote;
 
-    public static Config getInstance() {
-        if (instance == null) {
-            instance = new Config();
+    @Builder
+    private Config(@Singular List<Repository> repositories,
+                   @Singular List<Repository> scopedRepositories,
+                   Scenario scenarioWhileDailySync,
+                   int workerThreads,
+                   int syncParallelism,
+                   long syncInterval,
+                   long syncJitter,
+                   int syncQuorum,
+                   long maintenanceInterval,
+                   int maintenanceMaxPlayers,
+                   int maintenanceMaxPacks,
+                   long exclusionMaxFileSize,
+                   List<String> exclusionPatterns,
+                   boolean bootstrapEnabled,
+                   int bootstrapDepth,
+                   String bootstrapFilter,
+                   Verbosity loggingVerbosity,
+                   long loggingMaxFileSize,
+                   int loggingMaxFiles,
+                   long timeoutLocal,
+                   long timeoutNetwork,
+                   long timeoutMaintenance,
+                   boolean stagingEnabled,
+                   long historyAmendWindow,
+                   long historySquashAfter,
+                   int throttleNice,
+                   IoClass throttleIoClass,
+                   int throttleIoLevel,
+                   int throttleGitThreads,
+                   String throttleCpus,
+                   int throttleMaxProcesses,
+                   String networkNode,
+                   boolean networkCoordinator,
+                   long networkMergeInterval,
+                   boolean objectsShared) {
+        this.repositories = List.copyOf(repositories);
+        this.scenarioWhileDailySync = scenarioWhileDailySync;
+        this.workerThreads = workerThreads;
+        this.syncParallelism = syncParallelism;
+        this.syncInterval = syncInterval;
+        this.syncJitter = syncJitter;
+        this.syncQuorum = syncQuorum;
+        this.maintenanceInterval = maintenanceInterval;
+        this.maintenanceMaxPlayers = maintenanceMaxPlayers;
+        this.maintenanceMaxPacks = maintenanceMaxPacks;
+        this.exclusionMaxFileSize = exclusionMaxFileSize;
+        this.exclusionPatterns = List.copyOf(exclusionPatterns);
+        this.bootstrapEnabled = bootstrapEnabled;
+        this.bootstrapDepth = bootstrapDepth;
+        this.bootstrapFilter = bootstrapFilter;
+        this.loggingVerbosity = loggingVerbosity;
+        this.loggingMaxFileSize = loggingMaxFileSize;
+        this.loggingMaxFiles = loggingMaxFiles;
+        this.timeoutLocal = timeoutLocal;
+        this.timeoutNetwork = timeoutNetwork;
+        this.timeoutMaintenance = timeoutMaintenance;
+        this.stagingEnabled = stagingEnabled;
+        this.historyAmendWindow = historyAmendWindow;
+        this.historySquashAfter = historySquashAfter;
+        this.throttleNice = throttleNice;
+        this.throttleIoClass = throttleIoClass;
+        this.throttleIoLevel = throttleIoLevel;
+        this.throttleGitThreads = throttleGitThreads;
+        this.throttleCpus = throttleCpus;
+        this.throttleMaxProcesses = throttleMaxProcesses;
+        this.networkNode = networkNode;
+        this.networkCoordinator = networkCoordinator;
+        this.networkMergeInterval = networkMergeInterval;
+        this.objectsShared = objectsShared;
+
+        Map<String, Repository> byName = new HashMap<>();
+        NavigableSet<String> enabled = new TreeSet<>();
+        NavigableSet<String> withRemote = new TreeSet<>();
+        List<Repository> all = new ArrayList<>(this.repositories);
+        // Plugins of a monorepo can be looked up and completed, but are not synced on their own.
+        all.addAll(scopedRepositories);
+        for (Repository repository : all) {
+            byName.put(repository.getName(), repository);
+            if (repository.isEnabled()) {
+                enabled.add(repository.getName());
+                if (!repository.getRemote().equals("empty")) {
+                    withRemote.add(repository.getName());
+                }
+            }
         }
+        this.repositoriesByName = Map.copyOf(byName);
+        this.enabledNames = enabled;
+        this.enabledNamesWithRemote = withRemote;
+    }
 
-        return instance;
+    /**
+     * @return Snapshot the task running on this thread is pinned to, otherwise the one published last.
+     */
+    public static Config getInstance() {
+        Config pinned = PINNED.get();
+        return pinned != null ? pinned : instance;
     }
 
-    public static void clear() {
-        instance = new Config();
+    /**
+     * Runs the task with {@link #getInstance()} returning the snapshot on the calling thread, whatever is published meanwhile.
+     */
+    public static <T> T pin(Config config, Supplier<T> task) {
+        Config previous = PINNED.get();
+        PINNED.set(config);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                PINNED.remove();
+            } else {
+                PINNED.set(previous);
+            }
+        }
     }
 
-    public Scenario getScenarioWhileDailySync() {
-        return this.scenarioWhileDailySync;
+    /**
+     * Makes the snapshot the one every new task sees.
+     */
+    public static void publish(Config config) {
+        instance = config;
     }
 
-    public void setScenarioWhileDailySync(Scenario scenarioWhileDailySync) {
-        this.scenarioWhileDailySync = scenarioWhileDailySync;
+    /**
+     * @return If this server is a node of a network and pushes to its own branch.
+     */
+    public boolean isNetworked() {
+        return !this.networkNode.isEmpty();
     }
 
     public Repository findRepoByName(String name) {
-        Optional<Repository> repositoryToGive = this.repositories.stream().filter((repository) -> repository.getName().equals(name)).findFirst();
-        return repositoryToGive.orElse(null);
+        return this.repositoriesByName.get(name);
+    }
+
+    /**
+     * @return Names of enabled repos starting with the prefix, in order, optionally only those with a remote.
+     */
+    public List<String> completeRepoNames(String prefix, boolean withRemoteOnly) {
+        NavigableSet<String> names = withRemoteOnly ? this.enabledNamesWithRemote : this.enabledNames;
+        return new ArrayList<>(names.subSet(prefix, true, prefix + Character.MAX_VALUE, false));
     }
 
     public enum Scenario {
@@ -53,4 +333,73 @@ public class Config {
             return new Scenario[]{FAVORABLE, FORCE, ALL};
         }
     }
+
+    public enum Verbosity {
+        /**
+         * Only failed git operations.
+         */
+        FAILURES,
+        /**
+         * One line per git operation.
+         */
+        SUMMARY,
+        /**
+         * Every line of git output, like before there were log files.
+         */
+        FULL
+    }
+
+    /**
+     * I/O scheduling class git processes are started with.
+     */
+    public enum IoClass {
+        /**
+         * Left as it is.
+         */
+        NONE,
+        /**
+         * Served with the priority of {@code throttle.ioLevel}.
+         */
+        BEST_EFFORT,
+        /**
+         * Only served when no one else uses the disk.
+         */
+        IDLE
+    }
+
+    public static class ConfigBuilder {
+        private Scenario scenarioWhileDailySync = Scenario.ALL;
+        private int workerThreads = 4;
+        private int syncParallelism = 4;
+        private long syncInterval = 1440L;
+        private long syncJitter = 300L;
+        private int syncQuorum = 1;
+        private long maintenanceInterval = 24L;
+        private int maintenanceMaxPlayers = 0;
+        private int maintenanceMaxPacks = 20;
+        private long exclusionMaxFileSize = 50L;
+        private List<String> exclusionPatterns = List.of();
+        private boolean bootstrapEnabled = true;
+        private int bootstrapDepth = 1;
+        private String bootstrapFilter = "blob:none";
+        private Verbosity loggingVerbosity = Verbosity.SUMMARY;
+        private long loggingMaxFileSize = 10L;
+        private int loggingMaxFiles = 5;
+        private long timeoutLocal = 600L;
+        private long timeoutNetwork = 300L;
+        private long timeoutMaintenance = 3600L;
+        private boolean stagingEnabled = false;
+        private long historyAmendWindow = 0L;
+        private long historySquashAfter = 0L;
+        private int throttleNice = 10;
+        private IoClass throttleIoClass = IoClass.BEST_EFFORT;
+        private int throttleIoLevel = 7;
+        private int throttleGitThreads = 2;
+        private String throttleCpus = "";
+        private int throttleMaxProcesses = 4;
+        private String networkNode = "";
+        private boolean networkCoordinator = false;
+        private long networkMergeInterval = 10L;
+        private boolean objectsShared = false;
+    }
 }
@@ -0,0 +1,107 @@
+package gitsync;
+
+import org.eclipse.jgit.ignore.IgnoreNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tells which files of a working tree git leaves alone, so walks over the tree can skip them: files matching the exclude list or a built-in exclusion pattern, everything inside a directory matching one, and files above the size limit.
+ * Files git already tracks are never skipped, ignore rules do not apply to them and leaving them out would make them look deleted.
+ * One instance serves one walk over the tree, it remembers the ignored directories the walk went into.
+ */
+public class ExclusionRules {
+    private final Repository repository;
+    private final IgnoreNode rules = new IgnoreNode();
+    private final long limit;
+    // Ignored directories that hold tracked files, only their tracked files are kept.
+    private final Set<String> ignoredDirectories = new HashSet<>();
+    private Set<String> tracked;
+    private Set<String> trackedDirectories;
+
+    private ExclusionRules(Repository repository) throws IOException {
+        this.repository = repository;
+        this.rules.parse(new ByteArrayInputStream(String.join("\n", IgnoreService.rules(repository)).getBytes(StandardCharsets.UTF_8)));
+        this.limit = Config.getInstance().getExclusionMaxFileSize() * 1024L * 1024L;
+    }
+
+    public static ExclusionRules of(Repository repository) throws IOException {
+        return new ExclusionRules(repository);
+    }
+
+    /**
+     * @param relative Path of the directory relative to the directory of the repository.
+     * @return If nothing inside the directory has to be looked at.
+     */
+    public boolean skipsDirectory(Path relative) throws IOException {
+        String path = path(relative);
+        if (path.isEmpty() || !this.isIgnoredDirectory(path)) {
+            return false;
+        }
+
+        this.loadTracked();
+        if (!this.trackedDirectories.contains(path)) {
+            return true;
+        }
+        this.ignoredDirectories.add(path);
+        return false;
+    }
+
+    /**
+     * @param relative Path of the file relative to the directory of the repository.
+     * @return If git would not pick the file up.
+     */
+    public boolean skipsFile(Path relative, long size) throws IOException {
+        String path = path(relative);
+        boolean ignored = this.ignoredDirectories.contains(parent(path))
+                || Boolean.TRUE.equals(this.rules.checkIgnored(path, false))
+                || this.limit > 0 && size > this.limit;
+        if (!ignored) {
+            return false;
+        }
+
+        this.loadTracked();
+        return !this.tracked.contains(path);
+    }
+
+    private boolean isIgnoredDirectory(String path) {
+        // Git does not look into an ignored directory, so rules cannot bring back anything inside it.
+        return this.ignoredDirectories.contains(parent(path)) || Boolean.TRUE.equals(this.rules.checkIgnored(path, true));
+    }
+
+    /**
+     * The index is only read once something would be skipped, most walks never need it.
+     */
+    private void loadTracked() throws IOException {
+        if (this.tracked != null) {
+            return;
+        }
+
+        Set<String> tracked = RepoService.backend(this.repository).trackedFiles(this.repository);
+        if (tracked == null) {
+            throw new IOException(String.format("Cannot read the index of %s", this.repository.getName()));
+        }
+        this.tracked = tracked;
+        this.trackedDirectories = new HashSet<>();
+        for (String path : tracked) {
+            String directory = parent(path);
+            while (!directory.isEmpty() && this.trackedDirectories.add(directory)) {
+                directory = parent(directory);
+            }
+        }
+    }
+
+    private static String path(Path relative) {
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+}
@@ -0,0 +1,192 @@
+package gitsync;
+
+import gitsync.backend.GitResult;
+import gitsync.metrics.Phase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the full git output of every repository into its own rotating file under logs/ of the data folder.
+ * Lines are queued by the threads running git and written in batches by one background thread, the console only gets a summary per git operation.
+ */
+public class GitLog {
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int BATCH_SIZE = 4096;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final Entry STOP = new Entry(null, null);
+    private static final BlockingQueue<Entry> QUEUE = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final Map<String, FileChannel> CHANNELS = new HashMap<>();
+    private static File folder;
+    private static Thread writer;
+
+    private GitLog() {
+    }
+
+    public static synchronized void start(File dataFolder) {
+        if (writer != null) {
+            return;
+        }
+
+        folder = new File(dataFolder, "logs");
+        writer = new Thread(GitLog::write, "GitSync Log Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes what is still queued and closes the files.
+     */
+    public static synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+
+        QUEUE.offer(STOP);
+        try {
+            writer.join(5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * Adds a line of git output to the log of the repository.
+     */
+    public static void line(Repository repository, String line) {
+        if (Config.getInstance().getLoggingVerbosity() == Config.Verbosity.FULL) {
+            RepoService.getLogger().info(String.format("git output (%s) > %s", repository.getName(), line));
+        }
+        queue(repository, line);
+    }
+
+    /**
+     * Logs how a git operation went, into the log of the repository and as one line on the console.
+     * @param result {@code null} if the operation threw.
+     */
+    public static void summary(Repository repository, Phase phase, GitResult result, long millis) {
+        boolean success = result != null && !result.getOutcome().isFailure();
+        String summary = String.format("git %s of %s: %s in %d ms", phase.toString().toLowerCase(Locale.ROOT), repository.getName(), result == null ? "exception" : result.getOutcome(), millis);
+        queue(repository, "--- " + summary);
+        if (!success) {
+            RepoService.getLogger().warning(String.format("%s, see logs/%s.log", summary, repository.getName()));
+        } else if (Config.getInstance().getLoggingVerbosity() != Config.Verbosity.FAILURES) {
+            RepoService.getLogger().info(summary);
+        }
+    }
+
+    private static void queue(Repository repository, String line) {
+        // Never block git on a slow disk, lines are dropped instead and their number noted in the log.
+        if (writer == null || !QUEUE.offer(new Entry(repository.getName(), String.format("%s %s%n", LocalDateTime.now().format(TIME), line)))) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    private static void write() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(QUEUE.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            QUEUE.drainTo(batch, BATCH_SIZE - 1);
+
+            Map<String, StringBuilder> byRepository = new LinkedHashMap<>();
+            for (Entry entry : batch) {
+                if (entry == STOP) {
+                    running = false;
+                } else {
+                    byRepository.computeIfAbsent(entry.repository, (name) -> new StringBuilder()).append(entry.line);
+                }
+            }
+            batch.clear();
+
+            long dropped = DROPPED.getAndSet(0L);
+            if (dropped > 0) {
+                RepoService.getLogger().warning(String.format("Git log could not keep up, %d lines were dropped", dropped));
+            }
+            byRepository.forEach(GitLog::append);
+        }
+
+        CHANNELS.values().forEach(GitLog::close);
+        CHANNELS.clear();
+    }
+
+    private static void append(String repository, CharSequence text) {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(text.toString());
+        try {
+            FileChannel channel = CHANNELS.get(repository);
+            if (channel == null) {
+                Files.createDirectories(folder.toPath());
+                channel = FileChannel.open(file(repository, 0), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                CHANNELS.put(repository, channel);
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (channel.size() >= Config.getInstance().getLoggingMaxFileSize() * 1024L * 1024L) {
+                rotate(repository);
+            }
+        } catch (IOException e) {
+            RepoService.getLogger().warning(String.format("Cannot write git log of %s: %s", repository, e.getMessage()));
+        }
+    }
+
+    /**
+     * Moves name.log to name.1.log, name.1.log to name.2.log and so on, the oldest one is deleted.
+     */
+    private static void rotate(String repository) throws IOException {
+        close(CHANNELS.remove(repository));
+        int files = Config.getInstance().getLoggingMaxFiles();
+        Files.deleteIfExists(file(repository, files - 1));
+        for (int i = files - 2; i >= 0; i--) {
+            if (Files.exists(file(repository, i))) {
+                Files.move(file(repository, i), file(repository, i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static Path file(String repository, int index) {
+        return new File(folder, index == 0 ? repository + ".log" : String.format("%s.%d.log", repository, index)).toPath();
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to lose.
+        }
+    }
+
+    private static class Entry {
+        private final String repository;
+        private final String line;
+
+        private Entry(String repository, String line) {
+            this.repository = repository;
+            this.line = line;
+        }
+    }
+}
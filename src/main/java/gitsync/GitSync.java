@@ -1,10 +1,19 @@
 package gitsync;
 
+import gitsync.backend.BackendType;
+import gitsync.command.CancelCommand;
 import gitsync.command.ForcePushCommand;
 import gitsync.command.PullCommand;
+import gitsync.command.ReloadCommand;
+import gitsync.command.StatsCommand;
+import gitsync.command.StatusCommand;
 import gitsync.command.SyncCommand;
+import gitsync.metrics.MetricsCharts;
 import lombok.Getter;
 import org.bstats.bukkit.Metrics;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -13,29 +22,127 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 public class GitSync extends JavaPlugin {
     @Getter
     private static GitSync instance;
 
+    @Getter
+    private static volatile PluginState state = PluginState.STARTING;
+    private final AtomicBoolean reloading = new AtomicBoolean();
+
     public void onEnable() {
-        new Metrics(this, 14817);
+        MetricsCharts.register(new Metrics(this, 14817));
         instance = this;
-        this.setup();
-        getLogger().info(String.format("Running with git version %s", RepoService.executeCommand("git", "version").stream().findFirst().orElse("unknown")));
-        RepoService.dailySync();
+        state = PluginState.STARTING;
+        GitLog.start(this.getDataFolder());
         this.getCommand("gssync").setExecutor(new SyncCommand());
         this.getCommand("gspush").setExecutor(new ForcePushCommand());
         this.getCommand("gspull").setExecutor(new PullCommand());
+        this.getCommand("gsstats").setExecutor(new StatsCommand());
+        this.getCommand("gsreload").setExecutor(new ReloadCommand());
+        this.getCommand("gscancel").setExecutor(new CancelCommand());
+        this.getCommand("gsstatus").setExecutor(new StatusCommand());
+        // Config, local repos and the first sync all wait on disk, git and the network, the server must not.
+        Bukkit.getScheduler().runTaskAsynchronously(this, this::bootstrap);
+    }
+
+    public void onDisable() {
+        SyncScheduler.stop();
+        MaintenanceService.stop();
+        NetworkService.stop();
+        RepoExecutor.shutdown();
+        GitLog.stop();
+    }
+
+    private void bootstrap() {
+        long start = System.currentTimeMillis();
+        try {
+            this.setup();
+            RepoExecutor.start(Config.getInstance().getWorkerThreads());
+            getLogger().info(String.format("Running with %s", BackendType.CLI.getBackend().version()));
+        } catch (RuntimeException e) {
+            state = PluginState.FAILED;
+            getLogger().log(Level.SEVERE, "Startup failed, reload the plugin once the problem is fixed", e);
+            return;
+        }
+
+        state = PluginState.READY;
+        getLogger().info(String.format("Ready after %d ms", System.currentTimeMillis() - start));
+        RepoExecutor.runOnMainThread(() -> {
+            SyncScheduler.start();
+            MaintenanceService.start();
+            NetworkService.start();
+        });
+        RepoService.dailySync();
+    }
+
+    /**
+     * Reads config.yml again off the main thread and swaps in the new snapshot, tasks already running keep the old one.
+     * Schedulers are restarted with the new snapshot, then the callback gets on the main thread if the reload worked.
+     * @return If the reload was started, false while the plugin is starting or another reload is going on.
+     */
+    public boolean reload(Consumer<Boolean> callback) {
+        if (state == PluginState.STARTING || !this.reloading.compareAndSet(false, true)) {
+            return false;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            boolean success = false;
+            try {
+                this.setup();
+                RepoExecutor.start(Config.getInstance().getWorkerThreads());
+                state = PluginState.READY;
+                success = true;
+                getLogger().info(String.format("Reloaded config with %d repos", Config.getInstance().getRepositories().size()));
+            } catch (RuntimeException e) {
+                getLogger().log(Level.SEVERE, "Reload failed, the previous config stays in use", e);
+            } finally {
+                this.reloading.set(false);
+            }
+
+            boolean reloaded = success;
+            RepoExecutor.runOnMainThread(() -> {
+                if (reloaded) {
+                    SyncScheduler.stop();
+                    SyncScheduler.start();
+                    MaintenanceService.stop();
+                    MaintenanceService.start();
+                    NetworkService.stop();
+                    NetworkService.start();
+                }
+                callback.accept(reloaded);
+            });
+        });
+        return true;
+    }
+
+    /**
+     * Tells the sender why the command cannot run yet.
+     * @return If repositories are ready to be used by commands.
+     */
+    public static boolean checkReady(CommandSender commandSender) {
+        switch (state) {
+            case READY:
+                return true;
+            case STARTING:
+                commandSender.sendMessage(ChatColor.YELLOW + "GitSync is still starting, try again in a moment");
+                return false;
+            default:
+                commandSender.sendMessage(ChatColor.DARK_RED + "GitSync failed to start, check the console");
+                return false;
+        }
     }
 
     public void setup() {
-        Config.clear();
         File configFile = this.checkConfig(this.getDataFolder());
-        this.loadConfig(configFile, this.getDataFolder().getParentFile());
+        Config.publish(this.loadConfig(configFile, this.getDataFolder().getParentFile()));
         RepoService.createReposWhereNeeded(this.getDataFolder().getParentFile());
         RepoService.linkRemotesAndLocals();
         RepoService.recreateGitIgnores();
@@ -70,12 +177,156 @@ public class GitSync extends JavaPlugin {
             if (!fileConfiguration.contains(name + ".remote")) {
                 fileConfiguration.set(name + ".remote", "empty");
             }
+
+            if (!fileConfiguration.contains(name + ".backend")) {
+                fileConfiguration.set(name + ".backend", BackendType.CLI.toString());
+            }
         }
 
         if (!fileConfiguration.contains("dailySync")) {
             fileConfiguration.set("dailySync", Config.Scenario.ALL.toString());
         }
 
+        if (!fileConfiguration.contains("sync.threads")) {
+            fileConfiguration.set("sync.threads", 4);
+        }
+
+        if (!fileConfiguration.contains("sync.parallelism")) {
+            fileConfiguration.set("sync.parallelism", 4);
+        }
+
+        if (!fileConfiguration.contains("sync.interval")) {
+            fileConfiguration.set("sync.interval", 1440);
+        }
+
+        if (!fileConfiguration.contains("sync.jitter")) {
+            fileConfiguration.set("sync.jitter", 300);
+        }
+
+        if (!fileConfiguration.contains("sync.quorum")) {
+            fileConfiguration.set("sync.quorum", 1);
+        }
+
+        if (!fileConfiguration.contains("maintenance.interval")) {
+            fileConfiguration.set("maintenance.interval", 24);
+        }
+
+        if (!fileConfiguration.contains("maintenance.maxPlayers")) {
+            fileConfiguration.set("maintenance.maxPlayers", 0);
+        }
+
+        if (!fileConfiguration.contains("maintenance.maxPacks")) {
+            fileConfiguration.set("maintenance.maxPacks", 20);
+        }
+
+        if (!fileConfiguration.contains("exclusion.maxFileSize")) {
+            fileConfiguration.set("exclusion.maxFileSize", 50);
+        }
+
+        if (!fileConfiguration.contains("exclusion.patterns")) {
+            fileConfiguration.set("exclusion.patterns", Arrays.asList("*.db", "*.db-journal", "*.sqlite", "*.log", "*.log.gz", "logs/", "cache/"));
+        }
+
+        if (!fileConfiguration.contains("bootstrap.enabled")) {
+            fileConfiguration.set("bootstrap.enabled", true);
+        }
+
+        if (!fileConfiguration.contains("bootstrap.depth")) {
+            fileConfiguration.set("bootstrap.depth", 1);
+        }
+
+        if (!fileConfiguration.contains("bootstrap.filter")) {
+            fileConfiguration.set("bootstrap.filter", "blob:none");
+        }
+
+        if (!fileConfiguration.contains("logging.verbosity")) {
+            fileConfiguration.set("logging.verbosity", Config.Verbosity.SUMMARY.toString());
+        }
+
+        if (!fileConfiguration.contains("logging.maxFileSize")) {
+            fileConfiguration.set("logging.maxFileSize", 10);
+        }
+
+        if (!fileConfiguration.contains("logging.maxFiles")) {
+            fileConfiguration.set("logging.maxFiles", 5);
+        }
+
+        if (!fileConfiguration.contains("timeout.local")) {
+            fileConfiguration.set("timeout.local", 600);
+        }
+
+        if (!fileConfiguration.contains("timeout.network")) {
+            fileConfiguration.set("timeout.network", 300);
+        }
+
+        if (!fileConfiguration.contains("timeout.maintenance")) {
+            fileConfiguration.set("timeout.maintenance", 3600);
+        }
+
+        if (!fileConfiguration.contains("staging.enabled")) {
+            fileConfiguration.set("staging.enabled", false);
+        }
+
+        if (!fileConfiguration.contains("history.amendWindow")) {
+            fileConfiguration.set("history.amendWindow", 0);
+        }
+
+        if (!fileConfiguration.contains("history.squashAfter")) {
+            fileConfiguration.set("history.squashAfter", 0);
+        }
+
+        if (!fileConfiguration.contains("throttle.nice")) {
+            fileConfiguration.set("throttle.nice", 10);
+        }
+
+        if (!fileConfiguration.contains("throttle.ioClass")) {
+            fileConfiguration.set("throttle.ioClass", Config.IoClass.BEST_EFFORT.toString());
+        }
+
+        if (!fileConfiguration.contains("throttle.ioLevel")) {
+            fileConfiguration.set("throttle.ioLevel", 7);
+        }
+
+        if (!fileConfiguration.contains("throttle.gitThreads")) {
+            fileConfiguration.set("throttle.gitThreads", 2);
+        }
+
+        if (!fileConfiguration.contains("throttle.cpus")) {
+            fileConfiguration.set("throttle.cpus", "");
+        }
+
+        if (!fileConfiguration.contains("throttle.maxProcesses")) {
+            fileConfiguration.set("throttle.maxProcesses", 4);
+        }
+
+        if (!fileConfiguration.contains("network.node")) {
+            fileConfiguration.set("network.node", "");
+        }
+
+        if (!fileConfiguration.contains("network.coordinator")) {
+            fileConfiguration.set("network.coordinator", false);
+        }
+
+        if (!fileConfiguration.contains("network.mergeInterval")) {
+            fileConfiguration.set("network.mergeInterval", 10);
+        }
+
+        if (!fileConfiguration.contains("objects.shared")) {
+            fileConfiguration.set("objects.shared", false);
+        }
+
+        if (!fileConfiguration.contains("mode")) {
+            fileConfiguration.set("mode", "plugins");
+        }
+
+        if (!fileConfiguration.contains("monorepo.remote")) {
+            fileConfiguration.set("monorepo.remote", "empty");
+        }
+
+        if (!fileConfiguration.contains("monorepo.backend")) {
+            fileConfiguration.set("monorepo.backend", BackendType.CLI.toString());
+        }
+
         try {
             fileConfiguration.save(config);
         } catch (IOException var7) {
@@ -85,45 +336,105 @@ public class GitSync extends JavaPlugin {
         return config;
     }
 
-    private void loadConfig(File configFile, File dirOfPlugins) {
+    private Config loadConfig(File configFile, File dirOfPlugins) {
         FileConfiguration fileConfiguration = YamlConfiguration.loadConfiguration(configFile);
+        Config.ConfigBuilder config = Config.builder();
+        List<Repository> plugins = new ArrayList<>();
 
         for (String pluginSection : fileConfiguration.getConfigurationSection("").getKeys(false)) {
             File dirOfSomePlugin = new File(dirOfPlugins, pluginSection);
             if (dirOfSomePlugin.exists()) {
-                Repository repository = new Repository();
-                repository.setEnabled(fileConfiguration.getBoolean(pluginSection + ".enabled"));
-                repository.setName(pluginSection);
-                repository.setRemote(fileConfiguration.getString(pluginSection + ".remote"));
-                repository.setLocalRepoCreated(this.isLocalRepoCreated(dirOfSomePlugin));
-                repository.setDirectory(dirOfSomePlugin);
-                if (fileConfiguration.contains(pluginSection + ".exclude")) {
-                    repository.setIgnoreList(fileConfiguration.getStringList(pluginSection + ".exclude"));
-                } else {
-                    repository.setIgnoreList(new ArrayList<>());
-                }
-
-                Config.getInstance().getRepositories().add(repository);
+                Repository repository = Repository.builder()
+                        .enabled(fileConfiguration.getBoolean(pluginSection + ".enabled"))
+                        .name(pluginSection)
+                        .remote(fileConfiguration.getString(pluginSection + ".remote"))
+                        .mirrors(fileConfiguration.getStringList(pluginSection + ".mirrors"))
+                        .backend(BackendType.valueOf(fileConfiguration.getString(pluginSection + ".backend", BackendType.CLI.toString()).toUpperCase(Locale.ROOT)))
+                        .directory(dirOfSomePlugin)
+                        .ignoreList(fileConfiguration.getStringList(pluginSection + ".exclude"))
+                        .build();
+                plugins.add(repository);
             }
         }
 
-        Config.getInstance().setScenarioWhileDailySync(Config.Scenario.valueOf(fileConfiguration.getString("dailySync")));
+        if (fileConfiguration.getString("mode", "plugins").equalsIgnoreCase("monorepo")) {
+            this.loadMonorepo(config, plugins, fileConfiguration, dirOfPlugins);
+        } else {
+            plugins.forEach(config::repository);
+        }
+
+        config.scenarioWhileDailySync(Config.Scenario.valueOf(fileConfiguration.getString("dailySync")));
+        config.workerThreads(Math.max(1, fileConfiguration.getInt("sync.threads")));
+        config.syncParallelism(Math.max(1, fileConfiguration.getInt("sync.parallelism")));
+        config.syncInterval(Math.max(0L, fileConfiguration.getLong("sync.interval")));
+        config.syncJitter(Math.max(0L, fileConfiguration.getLong("sync.jitter")));
+        config.syncQuorum(Math.max(0, fileConfiguration.getInt("sync.quorum")));
+        config.maintenanceInterval(Math.max(0L, fileConfiguration.getLong("maintenance.interval")));
+        config.maintenanceMaxPlayers(Math.max(0, fileConfiguration.getInt("maintenance.maxPlayers")));
+        config.maintenanceMaxPacks(Math.max(2, fileConfiguration.getInt("maintenance.maxPacks")));
+        config.exclusionMaxFileSize(Math.max(0L, fileConfiguration.getLong("exclusion.maxFileSize")));
+        config.exclusionPatterns(fileConfiguration.getStringList("exclusion.patterns"));
+        config.bootstrapEnabled(fileConfiguration.getBoolean("bootstrap.enabled"));
+        config.bootstrapDepth(Math.max(0, fileConfiguration.getInt("bootstrap.depth")));
+        config.bootstrapFilter(fileConfiguration.getString("bootstrap.filter", ""));
+        config.loggingVerbosity(Config.Verbosity.valueOf(fileConfiguration.getString("logging.verbosity", Config.Verbosity.SUMMARY.toString()).toUpperCase(Locale.ROOT)));
+        config.loggingMaxFileSize(Math.max(1L, fileConfiguration.getLong("logging.maxFileSize")));
+        config.loggingMaxFiles(Math.max(1, fileConfiguration.getInt("logging.maxFiles")));
+        config.timeoutLocal(Math.max(0L, fileConfiguration.getLong("timeout.local")));
+        config.timeoutNetwork(Math.max(0L, fileConfiguration.getLong("timeout.network")));
+        config.timeoutMaintenance(Math.max(0L, fileConfiguration.getLong("timeout.maintenance")));
+        config.stagingEnabled(fileConfiguration.getBoolean("staging.enabled"));
+        config.historyAmendWindow(Math.max(0L, fileConfiguration.getLong("history.amendWindow")));
+        config.historySquashAfter(Math.max(0L, fileConfiguration.getLong("history.squashAfter")));
+        config.throttleNice(Math.max(0, Math.min(19, fileConfiguration.getInt("throttle.nice"))));
+        config.throttleIoClass(Config.IoClass.valueOf(fileConfiguration.getString("throttle.ioClass", Config.IoClass.BEST_EFFORT.toString()).toUpperCase(Locale.ROOT).replace('-', '_')));
+        config.throttleIoLevel(Math.max(0, Math.min(7, fileConfiguration.getInt("throttle.ioLevel"))));
+        config.throttleGitThreads(Math.max(0, fileConfiguration.getInt("throttle.gitThreads")));
+        config.throttleCpus(fileConfiguration.getString("throttle.cpus", "").trim());
+        config.throttleMaxProcesses(Math.max(0, fileConfiguration.getInt("throttle.maxProcesses")));
+        // Node ids become branch names.
+        config.networkNode(fileConfiguration.getString("network.node", "").trim().replaceAll("[^A-Za-z0-9._-]", "-"));
+        config.networkCoordinator(fileConfiguration.getBoolean("network.coordinator"));
+        config.networkMergeInterval(Math.max(1L, fileConfiguration.getLong("network.mergeInterval")));
+        config.objectsShared(fileConfiguration.getBoolean("objects.shared"));
+        return config.build();
     }
 
-    private boolean isLocalRepoCreated(File dirOfSomePlugin) {
-        List<File> filesInSomePluginDir = Arrays.asList(dirOfSomePlugin.listFiles());
-        Iterator<File> var3 = filesInSomePluginDir.iterator();
+    /**
+     * One repository rooted at the plugins folder syncs all enabled plugins at once.
+     * Every enabled plugin also gets a repository scoped to its folder, so commands can still target a single plugin.
+     */
+    private void loadMonorepo(Config.ConfigBuilder config, List<Repository> plugins, FileConfiguration fileConfiguration, File dirOfPlugins) {
+        List<String> paths = plugins.stream().filter(Repository::isEnabled).map(Repository::getName).sorted().toList();
+        Repository monorepo = Repository.builder()
+                .enabled(true)
+                .name(dirOfPlugins.getName())
+                .remote(fileConfiguration.getString("monorepo.remote", "empty"))
+                .mirrors(fileConfiguration.getStringList("monorepo.mirrors"))
+                .backend(BackendType.valueOf(fileConfiguration.getString("monorepo.backend", BackendType.CLI.toString()).toUpperCase(Locale.ROOT)))
+                .directory(dirOfPlugins)
+                .ignoreList(IgnoreService.monorepoRules(plugins))
+                .paths(paths)
+                .build();
+        config.repository(monorepo);
 
-        File eachFile;
-        do {
-            if (!var3.hasNext()) {
-                return false;
+        for (String path : paths) {
+            if (this.isLocalRepoCreated(new File(dirOfPlugins, path))) {
+                this.getLogger().warning(String.format("%s has a .git of its own, the monorepo would only record it as an embedded repo. Remove %s/.git to sync its files", path, path));
             }
 
-            eachFile = var3.next();
-        } while (!eachFile.getName().equals(".git"));
+            Repository plugin = monorepo.toBuilder()
+                    .name(path)
+                    .ignoreList(List.of())
+                    .paths(List.of(path))
+                    .scoped(true)
+                    .build();
+            config.scopedRepository(plugin);
+        }
+    }
 
-        return true;
+    private boolean isLocalRepoCreated(File dirOfSomePlugin) {
+        return new File(dirOfSomePlugin, ".git").exists();
     }
 
     private List<String> getNamesOfEachPluginFolder(List<File> files) {
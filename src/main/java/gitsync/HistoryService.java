@@ -0,0 +1,149 @@
+package gitsync;
+
+import gitsync.backend.CommitInfo;
+import gitsync.backend.GitBackend;
+import gitsync.backend.GitOutcome;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the history of server updates from growing without bound.
+ * Server updates made shortly after another one are amended into it, and old runs of server updates are squashed into one commit each.
+ * Commits made by people are never merged away, commits after a squashed run are written again with their original authorship and dates.
+ */
+public class HistoryService {
+    private static final String REMOTE_BRANCH = "refs/remotes/origin/master";
+
+    private HistoryService() {
+    }
+
+    /**
+     * @param rewritePushed If a pushed {@code HEAD} may be amended, because it is force pushed right after.
+     * @return If the commit with the message should be amended into {@code HEAD}: it is a server update within the amend window, and was not pushed unless allowed.
+     */
+    public static boolean shouldAmend(Repository repository, String message, boolean rewritePushed) {
+        long window = TimeUnit.MINUTES.toSeconds(Config.getInstance().getHistoryAmendWindow());
+        if (window <= 0) {
+            return false;
+        }
+
+        GitBackend backend = RepoService.backend(repository);
+        List<CommitInfo> head = backend.history(repository, 1);
+        if (head.isEmpty()) {
+            return false;
+        }
+
+        CommitInfo commit = head.get(0);
+        if (commit.getParents().size() > 1 || !commit.getSubject().equals(message)) {
+            return false;
+        }
+        // Measured from the first commit of the window, amending keeps its author date.
+        if (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - commit.getAuthorTime() >= window) {
+            return false;
+        }
+        return rewritePushed || !isPushed(backend, repository, commit.getId(), REMOTE_BRANCH) && !isPushed(backend, repository, commit.getId(), NetworkService.trackingRef());
+    }
+
+    private static boolean isPushed(GitBackend backend, Repository repository, String commit, String remoteBranch) {
+        return backend.resolve(repository, remoteBranch) != null && backend.isAncestor(repository, commit, remoteBranch);
+    }
+
+    /**
+     * Squashes every run of consecutive server update commits older than the configured days into its newest commit, then force pushes.
+     * Skipped if the repository is a shallow clone, if master of the remote is not known to be {@code HEAD}, or if the sync scenario never force pushes.
+     */
+    public static void compact(Repository repository) {
+        long days = Config.getInstance().getHistorySquashAfter();
+        if (days <= 0) {
+            return;
+        }
+
+        boolean hasRemote = !repository.getRemote().equals("empty");
+        if (hasRemote && Config.getInstance().isNetworked()) {
+            RepoService.getLogger().info(String.format("Not squashing history of %s, branches of other network nodes still hold the old commits", repository.getName()));
+            return;
+        }
+        if (hasRemote && Config.getInstance().getScenarioWhileDailySync() == Config.Scenario.FAVORABLE) {
+            RepoService.getLogger().info(String.format("Not squashing history of %s, the favorable scenario does not allow force pushes", repository.getName()));
+            return;
+        }
+
+        if (new File(repository.getDirectory(), ".git/shallow").exists()) {
+            // Commits at the shallow boundary look like roots, squashing them would cut off the history the remote has before them.
+            RepoService.getLogger().info(String.format("Not squashing history of %s, it is a shallow clone", repository.getName()));
+            return;
+        }
+
+        GitBackend backend = RepoService.backend(repository);
+        List<CommitInfo> commits = new ArrayList<>(backend.history(repository, 0));
+        if (commits.size() < 2) {
+            return;
+        }
+
+        String head = commits.get(0).getId();
+        if (hasRemote) {
+            String remoteHead = backend.remoteHead(repository);
+            if (remoteHead == null) {
+                RepoService.getLogger().info(String.format("Not squashing history of %s, cannot tell where master of its remote is", repository.getName()));
+                return;
+            }
+            if (!remoteHead.equals(head)) {
+                RepoService.getLogger().info(String.format("Not squashing history of %s, it is not in sync with its remote", repository.getName()));
+                return;
+            }
+        }
+
+        Collections.reverse(commits);
+        long cutoff = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - TimeUnit.DAYS.toSeconds(days);
+        String parent = null;
+        int squashed = 0;
+        for (int i = 0; i < commits.size(); i++) {
+            CommitInfo commit = commits.get(i);
+            // Trees are snapshots, the next commit of the run already holds all changes of this one.
+            if (isOldServerUpdate(commit, cutoff) && i + 1 < commits.size() && isOldServerUpdate(commits.get(i + 1), cutoff)) {
+                squashed++;
+                continue;
+            }
+            if (squashed == 0) {
+                parent = commit.getId();
+                continue;
+            }
+
+            List<String> parents = new ArrayList<>();
+            if (parent != null) {
+                parents.add(parent);
+            } else if (!commits.get(0).getParents().isEmpty()) {
+                // Only the original first commit may be replaced by a new root, any other commit without a parent here means history is missing.
+                RepoService.getLogger().warning(String.format("Not squashing history of %s, its oldest commit is not a root commit", repository.getName()));
+                return;
+            }
+            // Merged in sides of merges are kept as they are.
+            parents.addAll(commit.getParents().subList(Math.min(1, commit.getParents().size()), commit.getParents().size()));
+            parent = backend.commitTree(repository, commit, parents);
+            if (parent == null) {
+                RepoService.getLogger().warning(String.format("Cannot rewrite history of %s, leaving it as it is", repository.getName()));
+                return;
+            }
+        }
+
+        if (squashed == 0 || !backend.updateBranch(repository, parent, head).isSuccess()) {
+            return;
+        }
+        RepoService.getLogger().info(String.format("Squashed %d server update commits of %s older than %d days into the ones after them", squashed, repository.getName(), days));
+
+        if (hasRemote) {
+            GitOutcome outcome = RepoService.push(repository, false, true).getOutcome();
+            ChangeManifest manifest = ChangeManifest.of(repository);
+            manifest.setRemoteHead(outcome.isSuccessful() && manifest.getRemoteHead() != null ? parent : null);
+            manifest.save();
+        }
+    }
+
+    private static boolean isOldServerUpdate(CommitInfo commit, long cutoff) {
+        return commit.getParents().size() <= 1 && commit.getSubject().equals(RepoService.SERVER_COMMIT_TO_MAKE) && commit.getCommitTime() < cutoff;
+    }
+}
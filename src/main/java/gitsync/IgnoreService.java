@@ -0,0 +1,164 @@
+package gitsync;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds .gitignore files from the exclude list of a repository, the built-in exclusion patterns and every file above the size limit.
+ * A .gitignore is only written when its content would actually change.
+ */
+public class IgnoreService {
+    private static final String HEADER = "# Managed by GitSync, manual changes are overwritten. Use the exclude list in config.yml instead.";
+
+    private IgnoreService() {
+    }
+
+    /**
+     * @return If the .gitignore of the repository was rewritten.
+     */
+    public static boolean update(Repository repository) {
+        if (repository.isScoped()) {
+            // The .gitignore belongs to the whole monorepo.
+            return false;
+        }
+
+        File gitIgnore = new File(repository.getDirectory(), ".gitignore");
+        List<String> largeFiles;
+        try {
+            largeFiles = findLargeFiles(repository);
+        } catch (IOException e) {
+            RepoService.getLogger().warning(String.format("Cannot scan %s for large files", repository.getName()));
+            largeFiles = new ArrayList<>();
+        }
+
+        List<String> lines = new ArrayList<>();
+        if (!repository.getIgnoreList().isEmpty()) {
+            lines.add("# Exclude list");
+            lines.addAll(repository.getIgnoreList());
+        }
+        if (!Config.getInstance().getExclusionPatterns().isEmpty()) {
+            lines.add("# Built-in exclusions");
+            lines.addAll(Config.getInstance().getExclusionPatterns());
+        }
+        if (!largeFiles.isEmpty()) {
+            lines.add(String.format("# Larger than %d MiB", Config.getInstance().getExclusionMaxFileSize()));
+            largeFiles.forEach((path) -> lines.add("/" + path));
+        }
+
+        try {
+            if (lines.isEmpty()) {
+                return Files.deleteIfExists(gitIgnore.toPath());
+            }
+
+            lines.add(0, HEADER);
+            byte[] content = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+            if (gitIgnore.exists() && Arrays.equals(digest(Files.readAllBytes(gitIgnore.toPath())), digest(content))) {
+                return false;
+            }
+
+            Files.write(gitIgnore.toPath(), content);
+            if (!largeFiles.isEmpty()) {
+                RepoService.getLogger().info(String.format("Kept large files of %s out of git: %s", repository.getName(), String.join(", ", largeFiles)));
+            }
+            RepoService.getLogger().info(String.format("Updated .gitignore for repo %s", repository.getName()));
+            return true;
+        } catch (IOException e) {
+            RepoService.getLogger().warning(String.format("Cannot write into .gitignore file for repo %s", repository.getName()));
+            return false;
+        }
+    }
+
+    /**
+     * @return Rules of the exclude list and the built-in exclusion patterns, in the order they are written into the .gitignore.
+     */
+    public static List<String> rules(Repository repository) {
+        List<String> rules = new ArrayList<>(repository.getIgnoreList());
+        rules.addAll(Config.getInstance().getExclusionPatterns());
+        return rules;
+    }
+
+    /**
+     * Turns the enabled flags and exclude lists of plugins into rules of one .gitignore at the root of the plugins folder.
+     * Everything in the root is ignored but the folders of enabled plugins, exclude patterns only apply inside their own plugin folder.
+     */
+    public static List<String> monorepoRules(List<Repository> plugins) {
+        List<String> rules = new ArrayList<>();
+        rules.add("/*");
+        rules.add("!/.gitignore");
+        for (Repository plugin : plugins) {
+            if (plugin.isEnabled()) {
+                rules.add(String.format("!/%s/", plugin.getName()));
+                for (String pattern : plugin.getIgnoreList()) {
+                    rules.add(scopeRule(plugin.getName(), pattern));
+                }
+            }
+        }
+        return rules;
+    }
+
+    private static String scopeRule(String folder, String pattern) {
+        String negation = pattern.startsWith("!") ? "!" : "";
+        String rule = negation.isEmpty() ? pattern : pattern.substring(1);
+        if (rule.startsWith("/")) {
+            return String.format("%s/%s%s", negation, folder, rule);
+        }
+        // Like git, a pattern with a slash anywhere but at the end is relative to the folder, otherwise it matches at any depth.
+        String withoutTrailingSlash = rule.endsWith("/") ? rule.substring(0, rule.length() - 1) : rule;
+        return String.format(withoutTrailingSlash.contains("/") ? "%s/%s/%s" : "%s/%s/**/%s", negation, folder, rule);
+    }
+
+    private static List<String> findLargeFiles(Repository repository) throws IOException {
+        Path root = repository.getDirectory().toPath();
+        List<String> largeFiles = new ArrayList<>();
+        long limit = Config.getInstance().getExclusionMaxFileSize() * 1024L * 1024L;
+        if (limit <= 0) {
+            return largeFiles;
+        }
+
+        List<String> excludedDirectories = Config.getInstance().getExclusionPatterns().stream().filter((pattern) -> pattern.endsWith("/")).map((pattern) -> pattern.substring(0, pattern.length() - 1)).toList();
+        SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<>() {
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.getFileName().toString();
+                // Already excluded as a whole, no need to look inside.
+                return name.equals(".git") || excludedDirectories.contains(name) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && attrs.size() > limit) {
+                    largeFiles.add(root.relativize(path).toString().replace(File.separatorChar, '/'));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        };
+        for (Path path : repository.trackedRoots()) {
+            if (Files.exists(path)) {
+                Files.walkFileTree(path, visitor);
+            }
+        }
+        largeFiles.sort(String::compareTo);
+        return largeFiles;
+    }
+
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package gitsync;
+
+import gitsync.backend.GitResult;
+import gitsync.backend.RepositoryStats;
+import gitsync.metrics.Phase;
+import gitsync.metrics.SyncMetrics;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Keeps object databases of repositories small: squashes old history, moves shared objects to the {@link ObjectStore}, packs loose objects, writes commit-graphs, prunes and consolidates packs.
+ * Every repository has its own due time, due repositories are only maintained while few enough players are online.
+ */
+public class MaintenanceService {
+    private static final long CHECK_PERIOD_TICKS = 20L * 60L;
+    private static final Map<String, Long> DUE = new ConcurrentHashMap<>();
+    private static BukkitTask task;
+
+    private MaintenanceService() {
+    }
+
+    public static void start() {
+        long interval = TimeUnit.HOURS.toMillis(Config.getInstance().getMaintenanceInterval());
+        if (interval <= 0) {
+            return;
+        }
+
+        List<Repository> repositories = Config.getInstance().getRepositories().stream().filter((repository) -> repository.isEnabled() && repository.isLocalRepoCreated()).toList();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < repositories.size(); i++) {
+            DUE.put(repositories.get(i).getName(), now + interval * i / repositories.size());
+        }
+        task = Bukkit.getScheduler().runTaskTimer(GitSync.getInstance(), () -> check(repositories, interval), CHECK_PERIOD_TICKS, CHECK_PERIOD_TICKS);
+    }
+
+    public static void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        DUE.clear();
+    }
+
+    // Runs on the main thread, where online players may be looked at.
+    private static void check(List<Repository> repositories, long interval) {
+        if (Bukkit.getOnlinePlayers().size() > Config.getInstance().getMaintenanceMaxPlayers()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (Repository repository : repositories) {
+            Long due = DUE.get(repository.getName());
+            if (due != null && due <= now) {
+                // Not due again until this run is done.
+                DUE.put(repository.getName(), Long.MAX_VALUE);
+                RepoExecutor.submit(repository, "maintenance", () -> maintain(repository)).whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        if (RepoExecutor.isCancellation(throwable)) {
+                            RepoService.getLogger().info(String.format("Cancelled maintenance of %s", repository.getName()));
+                        } else {
+                            RepoService.getLogger().log(Level.SEVERE, String.format("Maintenance of %s failed", repository.getName()), throwable);
+                        }
+                    }
+                    DUE.replace(repository.getName(), System.currentTimeMillis() + interval);
+                });
+            }
+        }
+    }
+
+    public static GitResult maintain(Repository repository) {
+        // Squashed commits become unreachable and are pruned by the maintenance that follows once they expire.
+        HistoryService.compact(repository);
+        long start = System.currentTimeMillis();
+        RepositoryStats before = RepoService.backend(repository).stats(repository);
+        // Once the store has every object, repacking everything leaves them out of the repository.
+        int maxPacks = ObjectStore.share(repository) ? 0 : Config.getInstance().getMaintenanceMaxPacks();
+        GitResult result = SyncMetrics.record(repository, Phase.MAINTENANCE, () -> RepoService.backend(repository).maintain(repository, maxPacks));
+        RepositoryStats after = RepoService.backend(repository).stats(repository);
+        if (result.isSuccess()) {
+            RepoService.getLogger().info(String.format("Maintenance of %s done in %d ms: %s -> %s", repository.getName(), System.currentTimeMillis() - start, before, after));
+        } else {
+            RepoService.getLogger().warning(String.format("Maintenance of %s failed: %s -> %s", repository.getName(), before, after));
+        }
+        return result;
+    }
+}
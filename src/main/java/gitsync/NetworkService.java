@@ -0,0 +1,165 @@
+package gitsync;
+
+import gitsync.backend.GitBackend;
+import gitsync.backend.GitOutcome;
+import gitsync.backend.GitResult;
+import gitsync.metrics.Phase;
+import gitsync.metrics.SyncMetrics;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Lets the servers of a network share remotes without pushing over each other.
+ * Every node pushes its master to its own branch {@code server/<node>}, which no one else writes to, and pulls master.
+ * The coordinator merges the branches of all nodes into master and pushes it, so master only moves forward and is never force pushed.
+ */
+public class NetworkService {
+    public static final String BRANCH_PREFIX = "server/";
+    private static final String REMOTE_PREFIX = "refs/remotes/origin/";
+    private static final String REMOTE_MASTER = REMOTE_PREFIX + "master";
+    // Master may not exist yet, fetching it by name would fail.
+    private static final List<String> REF_SPECS = List.of("+refs/heads/*:" + REMOTE_PREFIX + "*");
+    private static final long TICKS_PER_MINUTE = 20L * 60L;
+    private static BukkitTask task;
+
+    private NetworkService() {
+    }
+
+    /**
+     * @return Branch of the remote this server pushes to, {@code master} outside of a network.
+     */
+    public static String branch() {
+        Config config = Config.getInstance();
+        return config.isNetworked() ? BRANCH_PREFIX + config.getNetworkNode() : "master";
+    }
+
+    /**
+     * @return Ref the branch this server pushes to is fetched into.
+     */
+    public static String trackingRef() {
+        return REMOTE_PREFIX + branch();
+    }
+
+    public static void start() {
+        Config config = Config.getInstance();
+        if (!config.isNetworked() || !config.isNetworkCoordinator()) {
+            return;
+        }
+
+        List<Repository> repositories = config.getRepositories().stream().filter((repository) -> repository.isEnabled() && repository.isLocalRepoCreated() && !repository.getRemote().equals("empty")).toList();
+        long period = config.getNetworkMergeInterval() * TICKS_PER_MINUTE;
+        task = Bukkit.getScheduler().runTaskTimer(GitSync.getInstance(), () -> repositories.forEach((repository) -> RepoExecutor.submit(repository, "network merge", () -> merge(repository)).exceptionally((throwable) -> {
+            if (RepoExecutor.isCancellation(throwable)) {
+                RepoService.getLogger().info(String.format("Cancelled network merge of %s", repository.getName()));
+            } else {
+                RepoService.getLogger().log(Level.SEVERE, String.format("Network merge of %s failed", repository.getName()), throwable);
+            }
+            return null;
+        })), period, period);
+        RepoService.getLogger().info(String.format("Merging branches of network nodes into master of %d repos every %d minutes", repositories.size(), config.getNetworkMergeInterval()));
+    }
+
+    public static void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Pulls master, then pushes to the branch of this node. The branch is force pushed, this node is the only one writing to it.
+     * A conflict with master is left to the coordinator to report, changes of the node are pushed to its branch anyway.
+     */
+    public static void sync(Repository repository) {
+        GitResult pull = RepoService.pull(repository);
+        switch (pull.getOutcome()) {
+            case MERGED:
+                RepoService.commit(repository, "'[merged]'");
+                break;
+            case MERGE_CONFLICT:
+                RepoService.abortMerge(repository);
+                RepoService.getLogger().warning(String.format("Cannot merge master into %s, its changes stay on %s until the conflict is resolved by hand", repository.getName(), branch()));
+                break;
+            case NO_REMOTE_BRANCH:
+                // The coordinator creates master once it merged the first node branch.
+                break;
+            case TIMED_OUT:
+            case CANCELLED:
+                return;
+            default:
+                // A node that joins with its own history cannot pull master until the coordinator merged its branch once.
+                if (!pull.getOutcome().isSuccessful()) {
+                    RepoService.getLogger().info(String.format("Cannot pull master of %s (%s), pushing to %s anyway", repository.getName(), pull.getOutcome(), branch()));
+                }
+        }
+
+        GitOutcome outcome = RepoService.push(repository, false, true).getOutcome();
+        if (outcome.isFailure()) {
+            RepoService.getLogger().warning(String.format("Cannot push %s to %s (%s)", repository.getName(), branch(), outcome));
+        }
+    }
+
+    /**
+     * Commits local changes, then merges master and the branch of every node into local master and pushes it.
+     * Branches that conflict are skipped and reported, until someone merges them by hand.
+     * @return If master of the remote was moved forward.
+     */
+    public static boolean merge(Repository repository) {
+        RepoService.commitChanges(repository, RepoService.SERVER_COMMIT_TO_MAKE);
+        GitBackend backend = RepoService.backend(repository);
+        GitResult fetch = SyncMetrics.record(repository, Phase.PULL, () -> backend.fetch(repository, REF_SPECS));
+        if (!fetch.isSuccess()) {
+            RepoService.getLogger().warning(String.format("Cannot fetch node branches of %s, not merging them", repository.getName()));
+            return false;
+        }
+
+        // Master may have been pushed to by hand, nodes are merged on top of it.
+        String remoteMaster = backend.resolve(repository, REMOTE_MASTER);
+        if (remoteMaster != null && !backend.isAncestor(repository, remoteMaster, "HEAD") && !mergeBranch(repository, REMOTE_MASTER)) {
+            return false;
+        }
+
+        int merged = 0;
+        for (String ref : backend.refs(repository, REMOTE_PREFIX + BRANCH_PREFIX).keySet()) {
+            if (!backend.isAncestor(repository, ref, "HEAD") && mergeBranch(repository, ref)) {
+                merged++;
+            }
+        }
+
+        String head = backend.resolve(repository, "HEAD");
+        if (head == null || head.equals(remoteMaster)) {
+            return false;
+        }
+
+        GitOutcome outcome = RepoService.push(repository, "master", remoteMaster == null, false).getOutcome();
+        if (!outcome.isSuccessful()) {
+            RepoService.getLogger().warning(String.format("Cannot push merged master of %s (%s), trying again next time", repository.getName(), outcome));
+            return false;
+        }
+        RepoService.getLogger().info(String.format("Merged %d node branches of %s into master", merged, repository.getName()));
+        return true;
+    }
+
+    private static boolean mergeBranch(Repository repository, String ref) {
+        String branch = ref.substring(REMOTE_PREFIX.length());
+        GitResult result = SyncMetrics.record(repository, Phase.MERGE, () -> RepoService.backend(repository).merge(repository, ref));
+        switch (result.getOutcome()) {
+            case MERGED:
+                RepoService.commit(repository, String.format("'[merged %s]'", branch));
+                return true;
+            case FAST_FORWARDED:
+            case UP_TO_DATE:
+                return true;
+            case MERGE_CONFLICT:
+                RepoService.abortMerge(repository);
+                RepoService.getLogger().warning(String.format("%s of %s conflicts with master, merge it by hand", branch, repository.getName()));
+                return false;
+            default:
+                RepoService.getLogger().warning(String.format("Cannot merge %s of %s (%s)", branch, repository.getName(), result.getOutcome()));
+                return false;
+        }
+    }
+}
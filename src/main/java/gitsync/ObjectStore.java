@@ -0,0 +1,139 @@
+package gitsync;
+
+import gitsync.backend.BackendType;
+import gitsync.backend.CliBackend;
+import gitsync.backend.GitResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Object database shared by all repositories, so content found in many of them (jars, default configs, language files) is stored once.
+ * Repositories borrow from it through {@code objects/info/alternates}, git does not write an object again that the store already has.
+ * Maintenance copies every ref of a repository into the store under {@code refs/repos/<repo>/}, then repacks the repository without what the store has.
+ * The store is never pruned: any repository may rely on any object in it, even one no longer reachable from the repository that brought it.
+ * Only repositories of the CLI backend are linked, the gc of JGit would copy borrowed objects back into the repository.
+ */
+public class ObjectStore {
+    // Fetches into the store and repacks of the store must not run at the same time.
+    private static final Object LOCK = new Object();
+
+    private ObjectStore() {
+    }
+
+    public static File directory() {
+        return new File(RepoService.getDataFolder(), "objects.git");
+    }
+
+    private static File alternates(Repository repository) {
+        return new File(repository.getDirectory(), ".git/objects/info/alternates");
+    }
+
+    private static String objectsPath() {
+        return new File(directory(), "objects").getAbsolutePath();
+    }
+
+    /**
+     * @return If the repository borrows objects from the store.
+     */
+    public static boolean isLinked(Repository repository) {
+        File alternates = alternates(repository);
+        try {
+            return alternates.isFile() && Files.readAllLines(alternates.toPath(), StandardCharsets.UTF_8).contains(objectsPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Makes the repository borrow objects from the store, creating the store on first use.
+     * Nothing is undone once {@code objects.shared} is turned off again, the repository may already rely on objects only the store has.
+     */
+    public static void link(Repository repository) {
+        if (!Config.getInstance().isObjectsShared() || repository.getBackend() != BackendType.CLI || isLinked(repository)) {
+            return;
+        }
+
+        try {
+            create();
+            File alternates = alternates(repository);
+            Files.createDirectories(alternates.getParentFile().toPath());
+            Files.writeString(alternates.toPath(), objectsPath() + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            RepoService.getLogger().info(String.format("Linked %s to the shared object store", repository.getName()));
+        } catch (IOException e) {
+            RepoService.getLogger().warning(String.format("Cannot link %s to the shared object store: %s", repository.getName(), e.getMessage()));
+        }
+    }
+
+    private static void create() throws IOException {
+        synchronized (LOCK) {
+            File store = directory();
+            if (new File(store, "objects").isDirectory()) {
+                return;
+            }
+
+            Files.createDirectories(store.toPath());
+            if (!run(store, "git", "init", "--bare", "-q").isSuccess()
+                    // Git must never prune the store on its own, not even after the usual two weeks.
+                    || !run(store, "git", "config", "gc.auto", "0").isSuccess()
+                    || !run(store, "git", "config", "gc.pruneExpire", "never").isSuccess()) {
+                throw new IOException("git init of the store failed");
+            }
+        }
+    }
+
+    /**
+     * Links the repository if it is not yet, copies its refs and the objects they need into the store, and repacks the store once it has too many packs.
+     * Partial clones are left out, the blobs they lack would have to be downloaded for the store.
+     * @return If the store now holds every object of the repository, so it can be repacked leaving them out.
+     */
+    public static boolean share(Repository repository) {
+        link(repository);
+        if (!Config.getInstance().isObjectsShared() || !isLinked(repository)) {
+            return false;
+        }
+        if (run(repository.getDirectory(), "git", "config", "--get", "extensions.partialClone").isSuccess()) {
+            RepoService.getLogger().info(String.format("Not sharing objects of %s, it is a partial clone", repository.getName()));
+            return false;
+        }
+
+        String namespace = "refs/repos/" + repository.getName().replaceAll("[^A-Za-z0-9._-]", "-") + "/";
+        String source = new File(repository.getDirectory(), ".git").getAbsolutePath();
+        synchronized (LOCK) {
+            // Started in the repository, so it is cancelled with the rest of its work.
+            // Always kept as a pack: repacking the repository only drops loose copies of objects the store has in a pack.
+            GitResult result = CliBackend.execute(new ProcessBuilder("git", "--git-dir=" + directory().getAbsolutePath(), "-c", "fetch.unpackLimit=1", "fetch", "--quiet", "--prune", "--no-tags", "--update-shallow", source, "+refs/*:" + namespace + "*").directory(repository.getDirectory().getAbsoluteFile()),
+                    (line) -> RepoService.printLine(repository, line), Config.getInstance().getTimeoutMaintenance());
+            if (!result.isSuccess()) {
+                RepoService.getLogger().warning(String.format("Cannot copy objects of %s into the shared object store", repository.getName()));
+                return false;
+            }
+
+            maintain();
+        }
+        return true;
+    }
+
+    private static void maintain() {
+        File[] packs = new File(directory(), "objects/pack").listFiles((dir, name) -> name.endsWith(".pack"));
+        if (packs == null || packs.length < Config.getInstance().getMaintenanceMaxPacks()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        // Unreachable objects are packed along instead of dropped, some repository may still borrow them.
+        if (run(directory(), "git", "repack", "-a", "-d", "-q", "--keep-unreachable").isSuccess()) {
+            RepoService.getLogger().info(String.format("Consolidated %d packs of the shared object store in %d ms", packs.length, System.currentTimeMillis() - start));
+        } else {
+            RepoService.getLogger().warning("Cannot consolidate packs of the shared object store");
+        }
+    }
+
+    private static GitResult run(File directory, String... command) {
+        return CliBackend.execute(new ProcessBuilder(List.of(command)).directory(directory), RepoService::printLine, Config.getInstance().getTimeoutMaintenance());
+    }
+}
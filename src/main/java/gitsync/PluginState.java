@@ -0,0 +1,13 @@
+package gitsync;
+
+public enum PluginState {
+    /**
+     * Config is being loaded and local repos created or linked, commands are rejected.
+     */
+    STARTING,
+    READY,
+    /**
+     * Startup threw, nothing is synced until the plugin is reloaded.
+     */
+    FAILED
+}
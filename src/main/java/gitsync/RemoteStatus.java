@@ -0,0 +1,102 @@
+package gitsync;
+
+import gitsync.backend.GitBackend;
+import gitsync.backend.GitOutcome;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last seen state of a repository against its remote: where the remote master points to, and how many commits local master is ahead and behind.
+ * Probing lists the refs of the remote only, counts are computed locally against the fetched remote master, nothing is fetched.
+ */
+@Getter
+public class RemoteStatus {
+    private static final String REMOTE_BRANCH = "refs/remotes/origin/master";
+    private static final Map<String, RemoteStatus> STATUSES = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, GitOutcome>> PUSHES = new ConcurrentHashMap<>();
+
+    /**
+     * Commit the remote master pointed to when last looked at, {@code null} if it has none or could not be reached.
+     */
+    private final String remoteHead;
+    /**
+     * Commit the remote master pointed to when it was last fetched or pushed to.
+     */
+    private final String fetchedHead;
+    /**
+     * Local commits not in the fetched remote master, -1 if there is nothing to count against (never fetched, no commit yet).
+     */
+    private final int ahead;
+    /**
+     * Commits of the fetched remote master not in local master, -1 if they cannot be counted.
+     */
+    private final int behind;
+    private final long checkedAt;
+
+    private RemoteStatus(String remoteHead, String fetchedHead, int ahead, int behind) {
+        this.remoteHead = remoteHead;
+        this.fetchedHead = fetchedHead;
+        this.ahead = ahead;
+        this.behind = behind;
+        this.checkedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return Last status of the repository, {@code null} if it was never looked at.
+     */
+    public static RemoteStatus get(Repository repository) {
+        return STATUSES.get(repository.getName());
+    }
+
+    /**
+     * Asks the remote where its master points to and counts commits against the fetched one.
+     */
+    public static RemoteStatus probe(Repository repository) {
+        return update(repository, RepoService.backend(repository).remoteHead(repository));
+    }
+
+    /**
+     * Counts commits again after a sync, which left the fetched remote master as the last known state of the remote.
+     */
+    public static RemoteStatus refresh(Repository repository) {
+        return update(repository, RepoService.backend(repository).resolve(repository, REMOTE_BRANCH));
+    }
+
+    private static RemoteStatus update(Repository repository, String remoteHead) {
+        GitBackend backend = RepoService.backend(repository);
+        String fetchedHead = backend.resolve(repository, REMOTE_BRANCH);
+        int[] counts = fetchedHead == null ? null : backend.aheadBehind(repository, "HEAD", REMOTE_BRANCH);
+        RemoteStatus status = counts == null ? new RemoteStatus(remoteHead, fetchedHead, -1, -1) : new RemoteStatus(remoteHead, fetchedHead, counts[0], counts[1]);
+        STATUSES.put(repository.getName(), status);
+        return status;
+    }
+
+    public static void recordPush(Repository repository, String remote, GitOutcome outcome) {
+        PUSHES.computeIfAbsent(repository.getName(), (name) -> new ConcurrentHashMap<>()).put(remote, outcome);
+    }
+
+    /**
+     * @return Outcome of the last push to each remote of the repository sorted by remote name.
+     */
+    public static Map<String, GitOutcome> lastPushes(Repository repository) {
+        return new TreeMap<>(PUSHES.getOrDefault(repository.getName(), Map.of()));
+    }
+
+    /**
+     * @return If the last push to any mirror of the repository failed, so it may lack commits origin has.
+     */
+    public static boolean isMirrorBehind(Repository repository) {
+        Map<String, GitOutcome> pushes = PUSHES.getOrDefault(repository.getName(), Map.of());
+        return repository.mirrorRemotes().keySet().stream().anyMatch((remote) -> pushes.containsKey(remote) && pushes.get(remote).isFailure());
+    }
+
+    /**
+     * @return If the remote master still points to what was fetched last, so pulling would bring nothing.
+     */
+    public boolean isRemoteUnchanged() {
+        return this.remoteHead != null && this.remoteHead.equals(this.fetchedHead);
+    }
+}
@@ -0,0 +1,270 @@
+package gitsync;
+
+import gitsync.backend.ProcessRegistry;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Runs git work off the server main thread.
+ * Work for one repository is serialized by a per-repository lock, so two tasks never touch the same working tree at once.
+ * Queued operations of a repository run in order, identical ones queued back to back are merged into one.
+ * Operations of a repository can be cancelled, see {@link #cancel(Repository)}.
+ */
+public class RepoExecutor {
+    // Keyed by directory, the plugins of a monorepo share the lock of the monorepo.
+    private static final Map<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+    private static final Map<String, OperationQueue> QUEUES = new ConcurrentHashMap<>();
+    private static ThreadPoolExecutor executor;
+
+    private RepoExecutor() {
+    }
+
+    /**
+     * Starts the worker pool, or resizes it if it is already running.
+     */
+    public static synchronized void start(int threads) {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory("GitSync Worker"));
+        } else if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    public static ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return (runnable) -> {
+            Thread thread = new Thread(runnable, String.format("%s #%d", name, counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static synchronized void shutdown() {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30L, TimeUnit.SECONDS)) {
+                RepoService.getLogger().warning("Some git tasks did not finish in time and were interrupted");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    private static String key(Repository repository) {
+        return repository.getDirectory().getAbsolutePath();
+    }
+
+    private static ReentrantLock lock(Repository repository) {
+        return LOCKS.computeIfAbsent(key(repository), (key) -> new ReentrantLock());
+    }
+
+    /**
+     * Runs the task on the calling thread while holding the lock of the repository, pinned to the config it started with.
+     */
+    public static <T> T runLocked(Repository repository, Supplier<T> task) {
+        ReentrantLock lock = lock(repository);
+        lock.lock();
+        try {
+            ProcessRegistry.reset(repository.getDirectory());
+            return Config.pin(Config.getInstance(), task);
+        } finally {
+            ProcessRegistry.reset(repository.getDirectory());
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the task on the calling thread if nothing else holds the lock of the repository right now, pinned to the config it started with.
+     * @return If the task was run.
+     */
+    public static boolean tryRunLocked(Repository repository, Runnable task) {
+        ReentrantLock lock = lock(repository);
+        if (!lock.tryLock()) {
+            return false;
+        }
+
+        try {
+            ProcessRegistry.reset(repository.getDirectory());
+            Config.pin(Config.getInstance(), () -> {
+                task.run();
+                return null;
+            });
+            return true;
+        } finally {
+            ProcessRegistry.reset(repository.getDirectory());
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the operation behind everything already queued for the repository, to run on the executor.
+     * If the last queued operation is identical (same repository, name and arguments) and still waiting for its turn, it is not queued again, the caller gets the future of the waiting one.
+     * @return Future completed with the result of the operation.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> enqueue(Repository repository, String operation, Supplier<T> task, Executor executor) {
+        OperationQueue queue = QUEUES.computeIfAbsent(key(repository), (key) -> new OperationQueue());
+        // Plugins of a monorepo share one queue, the same operation of another plugin is a different one.
+        String identity = String.format("%s of %s", operation, repository.getName());
+        synchronized (queue) {
+            CompletableFuture<?> waiting = queue.waiting.get(identity);
+            // Only merged into the last queued operation, merging past a different one would reorder them.
+            if (waiting != null && waiting == queue.tail) {
+                RepoService.getLogger().info(String.format("Merged %s of %s into the one already queued", operation, repository.getName()));
+                return (CompletableFuture<T>) waiting;
+            }
+
+            CompletableFuture<T> future = new CompletableFuture<>();
+            queue.tail.whenCompleteAsync((ignored, previousFailure) -> {
+                synchronized (queue) {
+                    // Started, from now on the same operation has to run again to see what changed meanwhile.
+                    queue.waiting.remove(identity, future);
+                }
+                if (future.isDone()) {
+                    // Cancelled while waiting.
+                    return;
+                }
+                try {
+                    future.complete(runLocked(repository, task));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }, executor);
+            queue.waiting.put(identity, future);
+            queue.tail = future;
+            return future;
+        }
+    }
+
+    /**
+     * Drops every queued operation of the repository and kills the git processes of the running one, which then fails at its next git step.
+     * @return How many operations were cancelled, the running one included.
+     */
+    public static int cancel(Repository repository) {
+        int cancelled = 0;
+        OperationQueue queue = QUEUES.get(key(repository));
+        if (queue != null) {
+            synchronized (queue) {
+                for (CompletableFuture<?> waiting : queue.waiting.values()) {
+                    if (waiting.cancel(false)) {
+                        cancelled++;
+                    }
+                }
+                queue.waiting.clear();
+            }
+        }
+
+        // Without a running task the mark would stay until some unrelated one starts.
+        if (lock(repository).isLocked()) {
+            ProcessRegistry.cancel(repository.getDirectory());
+            cancelled++;
+        }
+        return cancelled;
+    }
+
+    static boolean isCancellation(Throwable throwable) {
+        return throwable instanceof CancellationException || throwable.getCause() instanceof CancellationException;
+    }
+
+    /**
+     * Queues the operation on the worker pool.
+     */
+    public static <T> CompletableFuture<T> submit(Repository repository, String operation, Supplier<T> task) {
+        return enqueue(repository, operation, task, executor);
+    }
+
+    /**
+     * Queues the operation on the worker pool and hands its result to the callback on the main thread.
+     * If the operation is cancelled or fails the sender is told so instead, also on the main thread.
+     */
+    public static <T> void submit(Repository repository, String operation, Supplier<T> task, CommandSender sender, Consumer<T> callback) {
+        submit(repository, operation, task).whenComplete((result, throwable) -> {
+            if (throwable != null && isCancellation(throwable)) {
+                RepoService.getLogger().info(String.format("Cancelled %s of %s", operation, repository.getName()));
+                runOnMainThread(() -> sender.sendMessage(ChatColor.YELLOW + String.format("Cancelled %s of %s", operation, repository.getName())));
+                return;
+            }
+            if (throwable != null) {
+                RepoService.getLogger().log(Level.SEVERE, String.format("Git task for %s failed", repository.getName()), throwable);
+                runOnMainThread(() -> sender.sendMessage(ChatColor.DARK_RED + String.format("Git task for %s failed (%s), check the console", repository.getName(), operation)));
+                return;
+            }
+
+            runOnMainThread(() -> callback.accept(result));
+        });
+    }
+
+    /**
+     * Queues the operation for every repository, runs at most {@code parallelism} of them at once and waits until all are done.
+     * A repository whose action throws is logged and does not affect the others.
+     */
+    public static void runAll(Collection<Repository> repositories, String operation, int parallelism, Consumer<Repository> action) {
+        if (repositories.isEmpty()) {
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, repositories.size()), threadFactory("GitSync Sync"));
+        try {
+            CompletableFuture<?>[] futures = repositories.stream().map((repository) -> enqueue(repository, operation, () -> {
+                action.accept(repository);
+                return null;
+            }, pool).exceptionally((throwable) -> {
+                if (isCancellation(throwable)) {
+                    RepoService.getLogger().info(String.format("Cancelled sync of %s", repository.getName()));
+                } else {
+                    RepoService.getLogger().log(Level.SEVERE, String.format("Sync of %s failed", repository.getName()), throwable);
+                }
+                return null;
+            })).toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void runOnMainThread(Runnable runnable) {
+        GitSync plugin = GitSync.getInstance();
+        if (plugin != null && plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, runnable);
+        }
+    }
+
+    /**
+     * Operations of one repository in the order they were queued.
+     */
+    private static class OperationQueue {
+        private final Map<String, CompletableFuture<?>> waiting = new HashMap<>();
+        private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+    }
+}
@@ -1,63 +1,72 @@
 package gitsync;
 
-import gitsync.utils.OutputReader;
+import gitsync.backend.CliBackend;
+import gitsync.backend.GitBackend;
+import gitsync.backend.GitOutcome;
+import gitsync.backend.GitResult;
+import gitsync.metrics.Phase;
+import gitsync.metrics.SyncMetrics;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class RepoService {
-    // Following block of literals is for git return messages.
-    private static final String SUCCESS_GIT_INIT = "Initialized empty Git repository";
     private static final String REMOTE_PRESENT = "origin";
-    private static final String SUCCESS_LINK = "Branch 'master' set up to track remote branch 'master' from 'origin'.";
-    public static final String FORCED_UPDATE_SUCCESS = "forced update";
-    public static final String AUTOMATIC_MERGE_FAILED = "Automatic merge failed";
-    public static final String AUTOMATIC_MERGE_SUCCESS = "Automatic merge went well; stopped before committing as requested";
-    private static final String NO_TRACKED_BRANCH = "fatal: couldn't find remote ref master";
-    public static final String NO_UPDATES_FROM_LOCAL_MANY = "files changed";
-    public static final String NO_UPDATES_FROM_LOCAL_ONE = "file changed";
-    public static final String NO_UPDATES_FROM_REMOTE = "Already up to date.";
-    public static final String NO_CHANGES_TO_PUSH = "Everything up-to-date";
-    private static final String SERVER_COMMIT_TO_FIND = "[server update]";
     public static final String SERVER_COMMIT_TO_MAKE = "'[server update]'";
-    public static final String NO_REF_TO_MASTER = NO_TRACKED_BRANCH;
-    private static final String NO_PERMISSION_OR_NO_REPO = "remote: The project you were looking for could not be found or you don't have permission to view it.";
-    public static final String FAILED_TO_PUSH_SOME_REFS = "failed to push some refs";
+    // Mirror pushes run on their own threads while the worker pushes to origin, borrowing other workers could make them wait on each other.
+    private static final ExecutorService MIRROR_POOL = Executors.newCachedThreadPool(RepoExecutor.threadFactory("GitSync Mirror"));
+    // Repositories whose running sync had a network step killed by its timeout.
+    private static final Set<String> TIMED_OUT = ConcurrentHashMap.newKeySet();
 
     private RepoService() {
     }
 
+    /**
+     * @return Logger of the plugin, or a plain one when running outside of a server (e.g. benchmarks).
+     */
     public static Logger getLogger() {
-        return GitSync.getInstance().getLogger();
+        GitSync plugin = GitSync.getInstance();
+        return plugin != null ? plugin.getLogger() : Logger.getLogger("GitSync");
     }
 
-    public static void printOutput(List<String> output) {
-        output.forEach((string) -> getLogger().warning(String.format("git output > %s", string)));
+    /**
+     * @return Data folder of the plugin, or the one named by the {@code gitsync.dataFolder} system property when running outside of a server (e.g. tests).
+     */
+    public static File getDataFolder() {
+        GitSync plugin = GitSync.getInstance();
+        return plugin != null ? plugin.getDataFolder() : new File(System.getProperty("gitsync.dataFolder", new File(System.getProperty("java.io.tmpdir"), "gitsync").getPath()));
     }
 
-    public static List<String> executeCommand(ProcessBuilder processBuilder) {
-        List<String> output = new ArrayList<>();
-
-        try {
-            Process process = processBuilder.start();
-            OutputReader outputReader = new OutputReader(process.getInputStream());
-            OutputReader errorReader = new OutputReader(process.getErrorStream());
-            int exit = process.waitFor();
-            output.addAll(outputReader.getOutput());
-            output.addAll(errorReader.getOutput());
-        } catch (InterruptedException | IOException var7) {
-            var7.printStackTrace();
+    public static void printLine(String line) {
+        if (Config.getInstance().getLoggingVerbosity() == Config.Verbosity.FULL) {
+            getLogger().info(String.format("git output > %s", line));
         }
+    }
+
+    public static void printLine(Repository repository, String line) {
+        GitLog.line(repository, line);
+    }
 
-        return output;
+    public static List<String> executeCommand(ProcessBuilder processBuilder, Consumer<String> lineConsumer) {
+        return CliBackend.execute(processBuilder, lineConsumer).getOutput();
+    }
+
+    public static List<String> executeCommand(ProcessBuilder processBuilder) {
+        return executeCommand(processBuilder, (line) -> {
+        });
     }
 
     public static List<String> executeCommand(String... command) {
@@ -69,15 +78,11 @@ public class RepoService {
     }
 
     public static List<String> runCommand(String... command) {
-        List<String> output = executeCommand(command);
-        printOutput(output);
-        return output;
+        return executeCommand(new ProcessBuilder(command), RepoService::printLine);
     }
 
     public static List<String> runCommand(String[] command, File workingDirectory) {
-        List<String> output = executeCommand(command, workingDirectory);
-        printOutput(output);
-        return output;
+        return executeCommand(new ProcessBuilder(command).directory(workingDirectory), RepoService::printLine);
     }
 
     public static boolean isOutputContains(List<String> outputToScan, String string) {
@@ -96,66 +101,209 @@ public class RepoService {
     }
 
     // Helpers
+    public static GitBackend backend(Repository repository) {
+        return repository.getBackend().getBackend();
+    }
+
     public static void abortMerge(Repository repository) {
-        runCommand(new String[]{"git", "merge", "--abort"}, repository.getDirectory().getAbsoluteFile());
+        backend(repository).abortMerge(repository);
     }
 
-    public static List<String> pull(Repository repository) {
-        return runCommand(new String[]{"git", "pull", "--no-commit", "origin", "master"}, repository.getDirectory().getAbsoluteFile());
+    public static GitResult pull(Repository repository) {
+        return recordTimeout(repository, SyncMetrics.record(repository, Phase.PULL, () -> backend(repository).pull(repository)));
     }
 
-    public static List<String> push(Repository repository, boolean setUpstream, boolean force) {
-        ArrayList<String> args = new ArrayList<>();
+    /**
+     * Pushes to the branch of this server, {@code master} unless it is a node of a network, see {@link NetworkService#branch()}.
+     */
+    public static GitResult push(Repository repository, boolean setUpstream, boolean force) {
+        return push(repository, NetworkService.branch(), setUpstream, force);
+    }
 
-        args.add("git");
-        args.add("push");
-        if (setUpstream) {
-            args.add("--set-upstream");
+    /**
+     * Pushes to the branch of {@code origin} and at the same time to every mirror of the repository.
+     * @return Result of the push to {@code origin}, failed if fewer remotes than {@code sync.quorum} took the push.
+     */
+    public static GitResult push(Repository repository, String branch, boolean setUpstream, boolean force) {
+        List<CompletableFuture<GitResult>> mirrors = pushMirrors(repository, branch, force);
+        GitResult result = recordTimeout(repository, SyncMetrics.record(repository, Phase.PUSH, () -> backend(repository).push(repository, REMOTE_PRESENT, branch, setUpstream, force)));
+        RemoteStatus.recordPush(repository, REMOTE_PRESENT, result.getOutcome());
+        if (mirrors.isEmpty()) {
+            return result;
         }
-        if (force) {
-            args.add("-f");
+
+        int accepted = (result.getOutcome().isSuccessful() ? 1 : 0) + (int) mirrors.stream().map(CompletableFuture::join).filter((mirror) -> mirror.getOutcome().isSuccessful()).count();
+        int remotes = mirrors.size() + 1;
+        int quorum = Config.getInstance().getSyncQuorum() <= 0 ? remotes : Math.min(Config.getInstance().getSyncQuorum(), remotes);
+        if (accepted < quorum && result.getOutcome().isSuccessful()) {
+            getLogger().warning(String.format("Only %d of %d remotes of %s took the push, %d needed", accepted, remotes, repository.getName(), quorum));
+            return result.withOutcome(GitOutcome.FAILED);
         }
-        args.add("origin");
-        args.add("master");
+        return result;
+    }
 
-        return runCommand(args.toArray(String[]::new), repository.getDirectory().getAbsoluteFile());
+    /**
+     * Starts pushing to every mirror of the repository, each on its own thread.
+     */
+    public static List<CompletableFuture<GitResult>> pushMirrors(Repository repository, String branch, boolean force) {
+        // The pushes belong to the task that started them and keep its config.
+        Config config = Config.getInstance();
+        return repository.mirrorRemotes().keySet().stream().map((remote) -> CompletableFuture.supplyAsync(() -> Config.pin(config, () -> {
+            GitResult result = SyncMetrics.record(repository, Phase.MIRROR, () -> backend(repository).push(repository, remote, branch, false, force));
+            RemoteStatus.recordPush(repository, remote, result.getOutcome());
+            return result;
+        }), MIRROR_POOL).exceptionally((throwable) -> {
+            RemoteStatus.recordPush(repository, remote, GitOutcome.FAILED);
+            return new GitResult(-1, List.of(String.format("fatal: %s", throwable.getMessage())), GitOutcome.FAILED);
+        })).toList();
+    }
+
+    private static GitResult recordTimeout(Repository repository, GitResult result) {
+        if (result.getOutcome() == GitOutcome.TIMED_OUT) {
+            TIMED_OUT.add(repository.getName());
+        }
+        return result;
     }
 
     public static void add(Repository repository) {
-        runCommand(new String[]{"git", "add", "."}, repository.getDirectory().getAbsoluteFile());
+        add(repository, repository.getDirectory());
+    }
+
+    public static void add(Repository repository, File workTree) {
+        SyncMetrics.record(repository, Phase.ADD, () -> backend(repository).add(repository, workTree));
     }
 
     /**
      * Commits added changes to the repository.
+     * @return Result which outcome tells if any changes were committed.
+     */
+    public static GitResult commit(Repository repository, String message) {
+        return commit(repository, message, repository.getDirectory(), false);
+    }
+
+    public static GitResult commit(Repository repository, String message, File workTree, boolean amend) {
+        return SyncMetrics.record(repository, Phase.COMMIT, () -> backend(repository).commit(repository, message, workTree, amend));
+    }
+
+    public static boolean commitChanges(Repository repository, String message) {
+        return commitChanges(repository, message, false);
+    }
+
+    /**
+     * Adds and commits the working tree, unless its change manifest shows that nothing changed since the last time.
+     * With staging enabled git works on a snapshot of the working tree, so writes while add and commit run do not end up in the commit.
+     * A file written while it is copied into the snapshot can still be committed half written.
+     * The changes may be amended into {@code HEAD} instead, see {@link HistoryService#shouldAmend(Repository, String, boolean)}.
+     * @param rewritePushed If {@code HEAD} may be amended even though it was pushed, because a force push follows.
      * @return If any changes were committed.
      */
-    public static boolean commit(Repository repository, String message) {
-        List<String> output = runCommand(new String[]{"git", "commit", "-m", message}, repository.getDirectory());
-        return isOutputContains(output, SERVER_COMMIT_TO_FIND);
+    public static boolean commitChanges(Repository repository, String message, boolean rewritePushed) {
+        ChangeManifest manifest = ChangeManifest.of(repository);
+        try {
+            if (!manifest.refresh()) {
+                return false;
+            }
+        } catch (IOException e) {
+            getLogger().warning(String.format("Cannot scan working tree of %s, adding everything", repository.getName()));
+            manifest.invalidate();
+        }
+
+        IgnoreService.update(repository);
+        File workTree = repository.getDirectory();
+        if (Config.getInstance().isStagingEnabled()) {
+            try {
+                workTree = SnapshotStage.capture(repository);
+            } catch (IOException e) {
+                getLogger().warning(String.format("Cannot snapshot working tree of %s, adding it directly", repository.getName()));
+            }
+        }
+        add(repository, workTree);
+        GitOutcome outcome = commit(repository, message, workTree, HistoryService.shouldAmend(repository, message, rewritePushed)).getOutcome();
+        if (outcome.isFailure()) {
+            manifest.invalidate();
+        }
+        manifest.save();
+        return outcome == GitOutcome.COMMITTED;
     }
 
     public static void configure(Repository repository, String item, String value) {
-        runCommand(new String[]{"git", "config", item, value}, repository.getDirectory());
+        backend(repository).configure(repository, item, value);
     }
 
     public static boolean init(Repository repository) {
-        List<String> output = runCommand(new String[]{"git", "init"}, repository.getDirectory());
-        final boolean isSuccess = isOutputContains(output, SUCCESS_GIT_INIT);
+        final boolean isSuccess = SyncMetrics.record(repository, Phase.INIT, () -> backend(repository).init(repository)).isSuccess();
         if (isSuccess) {
-            configure(repository, "user.name", "GitSync");
-            configure(repository, "user.email", "gitsync@regulad.xyz");
+            configureNewRepository(repository);
         }
         return isSuccess;
     }
 
+    /**
+     * Creates the local repository from a shallow and/or partial clone of its remote, so the first pull does not download the whole history.
+     * The clone is made into a temporary directory and its .git moved into the plugin folder, existing files win over the ones of the remote.
+     */
+    public static boolean bootstrap(Repository repository) {
+        File temp = new File(new File(getDataFolder(), "bootstrap"), repository.getName());
+        try {
+            deleteRecursively(temp);
+            GitResult result = SyncMetrics.record(repository, Phase.CLONE, () -> backend(repository).cloneRemote(repository, temp, Config.getInstance().getBootstrapDepth(), Config.getInstance().getBootstrapFilter()));
+            if (!result.isSuccess()) {
+                return false;
+            }
+
+            Files.move(new File(temp, ".git").toPath(), new File(repository.getDirectory(), ".git").toPath());
+        } catch (IOException e) {
+            getLogger().warning(String.format("Cannot move cloned repo into %s", repository.getName()));
+            return false;
+        } finally {
+            try {
+                deleteRecursively(temp);
+            } catch (IOException e) {
+                getLogger().warning(String.format("Cannot delete temporary clone of %s", repository.getName()));
+            }
+        }
+
+        // An empty remote has no HEAD to restore from, that is fine.
+        backend(repository).restoreMissing(repository);
+        configureNewRepository(repository);
+        return true;
+    }
+
+    private static void configureNewRepository(Repository repository) {
+        configure(repository, "user.name", "GitSync");
+        configure(repository, "user.email", "gitsync@regulad.xyz");
+        ObjectStore.link(repository);
+        disableAutoGc(repository);
+    }
+
+    private static void disableAutoGc(Repository repository) {
+        if (Config.getInstance().getMaintenanceInterval() > 0) {
+            // MaintenanceService takes care of packing, git must not start it in the middle of a sync.
+            configure(repository, "gc.auto", "0");
+        }
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(file.toPath())) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
     // Tasks
     public static void createReposWhereNeeded(File pluginDirectory) {
         for (Repository repository : Config.getInstance().getRepositories()) {
             if (repository.isEnabled() && !repository.isLocalRepoCreated()) {
                 File file = new File(pluginDirectory, repository.getName());
                 getLogger().info(String.format("Creating local repo for %s", file.getName()));
-                if (init(repository)) {
-                    repository.setLocalRepoCreated(true);
+                if (Config.getInstance().isBootstrapEnabled() && !repository.getRemote().equals("empty") && bootstrap(repository)) {
+                    getLogger().info(String.format("Created local repo for %s from a clone of its remote", file.getName()));
+                } else if (init(repository)) {
                     getLogger().info(String.format("Created local repo for %s", file.getName()));
                 } else {
                     getLogger().severe(String.format("Something got wrong while initializing local repo for %s", file.getName()));
@@ -168,28 +316,8 @@ public class RepoService {
     public static void recreateGitIgnores() {
         for (Repository repository : Config.getInstance().getRepositories()) {
             if (repository.isEnabled() && repository.isLocalRepoCreated()) {
-                File gitIgnore = new File(repository.getDirectory(), ".gitignore");
-                GitSync.getInstance().getLogger().info(String.format("Recreating .gitignore for repo %s ...", repository.getName()));
-                if (gitIgnore.exists()) {
-                    gitIgnore.delete();
-                }
-
-                if (!repository.getIgnoreList().isEmpty()) {
-                    try {
-                        gitIgnore.createNewFile();
-                    } catch (IOException var7) {
-                        GitSync.getInstance().getLogger().warning(String.format("Cannot create .gitignore file for repo %s", repository.getName()));
-                        return;
-                    }
-
-                    try {
-                        Files.write(Paths.get(gitIgnore.toURI()), repository.getIgnoreList(), StandardCharsets.UTF_8, StandardOpenOption.WRITE);
-                    } catch (IOException var6) {
-                        GitSync.getInstance().getLogger().warning(String.format("Cannot write into .gitignore file for repo %s", repository.getName()));
-                    }
-                }
-
-                GitSync.getInstance().getLogger().info(String.format("Recreated .gitignore for repo %s", repository.getName()));
+                // On reload a sync of the repo may be running at the same time.
+                RepoExecutor.runLocked(repository, () -> IgnoreService.update(repository));
             }
         }
 
@@ -197,106 +325,152 @@ public class RepoService {
 
     public static void linkRemotesAndLocals() {
         for (Repository repository : Config.getInstance().getRepositories()) {
-            if (repository.isEnabled() && repository.isLocalRepoCreated() && !repository.getRemote().equals("empty")) {
-                GitSync.getInstance().getLogger().info(String.format("Linking local and remote for %s", repository.getName()));
-                ProcessBuilder processBuilder = new ProcessBuilder("git", "remote");
-                processBuilder.directory(repository.getDirectory().getAbsoluteFile());
-                List<String> output = executeCommand(processBuilder);
-                if (isOutputContains(output, REMOTE_PRESENT)) {
-                    GitSync.getInstance().getLogger().info(String.format("Local and remote for %s already linked", repository.getName()));
-                } else {
-                    processBuilder = new ProcessBuilder("git", "remote", "add", "origin", repository.getRemote()); // Authentication stuff will probably go here
-                    processBuilder.directory(repository.getDirectory().getAbsoluteFile());
-                    executeCommand(processBuilder);
-                    GitSync.getInstance().getLogger().info(String.format("Linked local and remote for %s", repository.getName()));
-                }
+            if (repository.isEnabled() && repository.isLocalRepoCreated()) {
+                // Repositories created before maintenance was turned on still have git's own gc enabled.
+                RepoExecutor.runLocked(repository, () -> {
+                    disableAutoGc(repository);
+                    return !repository.getRemote().equals("empty") && linkRemoteAndLocal(repository);
+                });
             }
         }
 
     }
 
-    public static void dailySync() {
-        for (Repository o : Config.getInstance().getRepositories()) {
-            if (o.isEnabled() && o.isLocalRepoCreated()) {
-                add(o);
-                commit(o, SERVER_COMMIT_TO_MAKE);
-                if (!o.getRemote().equals("empty")) {
-                    switch (Config.getInstance().getScenarioWhileDailySync()) {
-                        case ALL:
-                            if (!favorableSync(o)) {
-                                unfavorableSync(o);
-                            }
-                            break;
-                        case FAVORABLE:
-                            favorableSync(o);
-                            break;
-                        case FORCE:
-                            unfavorableSync(o);
-                    }
-                }
+    private static boolean linkRemoteAndLocal(Repository repository) {
+        getLogger().info(String.format("Linking local and remote for %s", repository.getName()));
+        List<String> output = backend(repository).remotes(repository).getOutput();
+        // Remotes are listed one per line, mirror-1 must not count as mirror-10.
+        repository.mirrorRemotes().forEach((name, url) -> {
+            if (!output.contains(name)) {
+                SyncMetrics.record(repository, Phase.REMOTE, () -> backend(repository).addRemote(repository, name, url));
+                getLogger().info(String.format("Added mirror %s of %s", name, repository.getName()));
             }
+        });
+        if (isOutputContains(output, REMOTE_PRESENT)) {
+            getLogger().info(String.format("Local and remote for %s already linked", repository.getName()));
+            return false;
         }
 
+        SyncMetrics.record(repository, Phase.REMOTE, () -> backend(repository).addRemote(repository, "origin", repository.getRemote())); // Authentication stuff will probably go here
+        getLogger().info(String.format("Linked local and remote for %s", repository.getName()));
+        return true;
     }
 
-    public static void unfavorableSync(Repository repository) {
-        GitSync.getInstance().getLogger().info(String.format("Using force sync scenario for %s", repository.getName()));
-        List<String> output = push(repository, false, true);
-        if (isOutputContains(output, FORCED_UPDATE_SUCCESS)) {
-            GitSync.getInstance().getLogger().info(String.format("Force sync scenario successfully applied for %s", repository.getName()));
-        }
+    public static void dailySync() {
+        // A reload in the middle of the sync must not change what it works on.
+        Config config = Config.getInstance();
+        Config.Scenario scenario = config.getScenarioWhileDailySync();
+        List<Repository> repositories = config.getRepositories().stream().filter((repository) -> repository.isEnabled() && repository.isLocalRepoCreated()).toList();
+        RepoExecutor.runAll(repositories, String.format("sync (%s)", scenario), config.getSyncParallelism(), (repository) -> syncRepository(repository, scenario));
     }
 
-    public static boolean favorableSync(Repository repository) {
-        List<String> output = pull(repository);
-        if (isOutputContains(output, NO_TRACKED_BRANCH)) {
-            GitSync.getInstance().getLogger().info(String.format("There is no ref to remote master for %s, will try to push with upstream.", repository.getName()));
-            output = push(repository, true, false);
-            if (isOutputContains(output, SUCCESS_LINK)) {
-                GitSync.getInstance().getLogger().info(String.format("Masters of remote and local are linked for %s (no ref to master was there)", repository.getName()));
+    /**
+     * @return If the sync ran to its end, false if talking to the remote timed out and it should be tried again.
+     */
+    public static boolean syncRepository(Repository repository, Config.Scenario scenario) {
+        TIMED_OUT.remove(repository.getName());
+        Config config = Config.getInstance();
+        // Nodes of a network always pull master first, their force pushes only go to their own branch.
+        boolean committed = commitChanges(repository, SERVER_COMMIT_TO_MAKE, scenario == Config.Scenario.FORCE && !config.isNetworked());
+        if (!repository.getRemote().equals("empty")) {
+            ChangeManifest manifest = ChangeManifest.of(repository);
+            RemoteStatus status = RemoteStatus.probe(repository);
+            boolean mirrorBehind = RemoteStatus.isMirrorBehind(repository);
+            if (!committed && !mirrorBehind && manifest.getRemoteHead() != null && manifest.getRemoteHead().equals(status.getRemoteHead())) {
+                getLogger().info(String.format("No local or remote changes for %s, skipping sync", repository.getName()));
                 return true;
             }
-        }
 
-        if (isOutputContains(output, AUTOMATIC_MERGE_FAILED)) {
-            GitSync.getInstance().getLogger().info(String.format("Can't merge remote and local to sync them, will abort merge for %s", repository.getName()));
-            abortMerge(repository);
-            GitSync.getInstance().getLogger().info(String.format("Merge for synchronization of %s is aborted, use manual push and pull or enable both scenarios", repository.getName()));
-            return false;
-        } else if (isOutputContains(output, NO_PERMISSION_OR_NO_REPO)) {
-            GitSync.getInstance().getLogger().info(String.format("Can't pull or push because of lack of permission, or such remote repo for %s is not exists", repository.getName()));
-            return false;
-        } else {
-            if (isOutputContains(output, NO_REF_TO_MASTER)) {
-                output = push(repository, true, false);
-                if (isOutputContains(output, SUCCESS_LINK)) {
-                    GitSync.getInstance().getLogger().info(String.format("Masters of remote and local are linked for %s", repository.getName()));
-                    return true;
+            if (config.isNetworked()) {
+                NetworkService.sync(repository);
+            } else if (status.isRemoteUnchanged() && status.getBehind() == 0 && status.getAhead() == 0 && mirrorBehind) {
+                getLogger().info(String.format("Remote of %s has not moved, catching up mirrors that missed the last push", repository.getName()));
+                pushMirrors(repository, NetworkService.branch(), scenario == Config.Scenario.FORCE).forEach(CompletableFuture::join);
+            } else if (status.isRemoteUnchanged() && status.getBehind() == 0 && status.getAhead() == 0) {
+                getLogger().info(String.format("Remote of %s has not moved and there is nothing new to push, skipping sync", repository.getName()));
+            } else if (status.isRemoteUnchanged() && status.getBehind() == 0 && scenario != Config.Scenario.FORCE) {
+                // Nothing to fetch, local master just has to be fast-forwarded on the remote.
+                getLogger().info(String.format("Remote of %s has not moved, pushing %d commits without pulling", repository.getName(), status.getAhead()));
+                if (!push(repository, false, false).getOutcome().isSuccessful() && scenario == Config.Scenario.ALL) {
+                    unfavorableSync(repository);
+                }
+            } else {
+                switch (scenario) {
+                    case ALL:
+                        if (!favorableSync(repository)) {
+                            unfavorableSync(repository);
+                        }
+                        break;
+                    case FAVORABLE:
+                        favorableSync(repository);
+                        break;
+                    case FORCE:
+                        unfavorableSync(repository);
                 }
             }
+            RemoteStatus.refresh(repository);
+
+            // In sync once the remote has what was committed here and local master has everything of remote master.
+            String head = backend(repository).resolve(repository, "HEAD");
+            String remoteMaster = backend(repository).resolve(repository, "refs/remotes/origin/master");
+            boolean synced = head != null && remoteMaster != null && (config.isNetworked()
+                    ? head.equals(backend(repository).resolve(repository, NetworkService.trackingRef())) && backend(repository).isAncestor(repository, remoteMaster, head)
+                    : head.equals(remoteMaster));
+            manifest.setRemoteHead(synced ? remoteMaster : null);
+            try {
+                // Pulled files would otherwise look changed on the next run.
+                manifest.refresh();
+            } catch (IOException e) {
+                manifest.invalidate();
+            }
+            manifest.save();
+        }
+        return !TIMED_OUT.remove(repository.getName());
+    }
 
-            if (isOutputContains(output, AUTOMATIC_MERGE_SUCCESS)) {
+    public static void unfavorableSync(Repository repository) {
+        getLogger().info(String.format("Using force sync scenario for %s", repository.getName()));
+        GitResult result = push(repository, false, true);
+        if (result.getOutcome() == GitOutcome.FORCE_PUSHED) {
+            getLogger().info(String.format("Force sync scenario successfully applied for %s", repository.getName()));
+        }
+    }
+
+    public static boolean favorableSync(Repository repository) {
+        GitResult result = pull(repository);
+        switch (result.getOutcome()) {
+            case NO_REMOTE_BRANCH:
+                getLogger().info(String.format("There is no ref to remote master for %s, will try to push with upstream.", repository.getName()));
+                if (push(repository, true, false).getOutcome().isSuccessful()) {
+                    getLogger().info(String.format("Masters of remote and local are linked for %s (no ref to master was there)", repository.getName()));
+                    return true;
+                }
+                return false;
+            case MERGE_CONFLICT:
+                getLogger().info(String.format("Can't merge remote and local to sync them, will abort merge for %s", repository.getName()));
+                abortMerge(repository);
+                getLogger().info(String.format("Merge for synchronization of %s is aborted, use manual push and pull or enable both scenarios", repository.getName()));
+                return false;
+            case NO_PERMISSION:
+                getLogger().info(String.format("Can't pull or push because of lack of permission, or such remote repo for %s is not exists", repository.getName()));
+                return false;
+            case MERGED:
                 commit(repository, "'[merged]'");
                 push(repository, false, false);
                 return true;
-            } else if (!isOutputContains(output, NO_UPDATES_FROM_LOCAL_MANY) && !isOutputContains(output, NO_UPDATES_FROM_LOCAL_ONE)) {
-                if (isOutputContains(output, NO_UPDATES_FROM_REMOTE)) {
-                    GitSync.getInstance().getLogger().info(String.format("No changes in remote repo of %s detected, just pushing from server...", repository.getName()));
-                    output = push(repository, false, false);
-                    if (isOutputContains(output, NO_CHANGES_TO_PUSH)) {
-                        GitSync.getInstance().getLogger().info(String.format("There are no changes to push to remote for %s", repository.getName()));
-                    } else {
-                        GitSync.getInstance().getLogger().info(String.format("Changes from server pushed to remote for %s", repository.getName()));
-                    }
-
-                    return true;
+            case FAST_FORWARDED:
+                getLogger().info(String.format("Changes just pulled from remote repo to local for %s", repository.getName()));
+                return true;
+            case UP_TO_DATE:
+                getLogger().info(String.format("No changes in remote repo of %s detected, just pushing from server...", repository.getName()));
+                if (push(repository, false, false).getOutcome() == GitOutcome.UP_TO_DATE) {
+                    getLogger().info(String.format("There are no changes to push to remote for %s", repository.getName()));
                 } else {
-                    return false;
+                    getLogger().info(String.format("Changes from server pushed to remote for %s", repository.getName()));
                 }
-            } else {
-                GitSync.getInstance().getLogger().info(String.format("Changes just pulled from remote repo to local for %s", repository.getName()));
                 return true;
-            }
+            default:
+                return false;
         }
     }
 }
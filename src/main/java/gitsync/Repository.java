@@ -1,16 +1,68 @@
 package gitsync;
 
-import lombok.Data;
+import gitsync.backend.BackendType;
+import lombok.Builder;
+import lombok.Value;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-@Data
+/**
+ * Immutable, part of the {@link Config} snapshot. State that changes while the config is in use, like whether the local repo exists yet, is read from disk.
+ */
+@Value
+@Builder(toBuilder = true)
 public class Repository {
-    private String name;
-    private boolean enabled;
-    private String remote;
-    private boolean localRepoCreated;
-    private File directory;
-    private List<String> ignoreList;
+    String name;
+    boolean enabled;
+    String remote;
+    File directory;
+    @Builder.Default
+    List<String> ignoreList = List.of();
+    @Builder.Default
+    BackendType backend = BackendType.CLI;
+    /**
+     * Paths relative to {@link #directory} that are synced, empty for the whole directory.
+     * The repository of a monorepo lists its enabled plugin folders here.
+     */
+    @Builder.Default
+    List<String> paths = List.of();
+    /**
+     * If add and commit stop at {@link #paths}, for a single plugin of a monorepo.
+     */
+    boolean scoped;
+    /**
+     * URLs every push also goes to, besides {@link #remote} which stays the only one pulled from.
+     */
+    @Builder.Default
+    List<String> mirrors = List.of();
+
+    /**
+     * @return If git has been set up in {@link #directory}, by an earlier start or by {@link RepoService#createReposWhereNeeded}.
+     */
+    public boolean isLocalRepoCreated() {
+        return new File(this.directory, ".git").exists();
+    }
+
+    /**
+     * @return URL of every mirror by the name of its git remote, in configured order.
+     */
+    public Map<String, String> mirrorRemotes() {
+        Map<String, String> remotes = new LinkedHashMap<>();
+        for (int i = 0; i < this.mirrors.size(); i++) {
+            remotes.put(String.format("mirror-%d", i + 1), this.mirrors.get(i));
+        }
+        return remotes;
+    }
+
+    /**
+     * @return Directories that hold the synced files.
+     */
+    public List<Path> trackedRoots() {
+        Path root = this.directory.toPath();
+        return this.paths.isEmpty() ? List.of(root) : this.paths.stream().map(root::resolve).toList();
+    }
 }
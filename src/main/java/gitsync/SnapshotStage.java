@@ -0,0 +1,112 @@
+package gitsync;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps a copy of the synced files of a repository in {@code staging/<repo>}, which git adds and commits from instead of the live plugin folder.
+ * Plugins may write their files at any time, git reading them meanwhile would commit half written files.
+ * The snapshot only keeps writes away from git while add and commit run, a file written while it is copied can still be copied half written.
+ * Only files whose size or modification time differ from their staged copy are copied again, so a snapshot takes about as long as copying what changed.
+ * Files are copied, not hard linked: a link shares the data with the live file, and plugins mostly rewrite their files in place.
+ */
+public class SnapshotStage {
+    private SnapshotStage() {
+    }
+
+    /**
+     * @return Directory the snapshot of the repository is kept in.
+     */
+    public static File directory(Repository repository) {
+        return new File(new File(RepoService.getDataFolder(), "staging"), repository.getName());
+    }
+
+    /**
+     * Updates the snapshot of the repository to match its working tree.
+     * Files git would not pick up anyway are left out, see {@link ExclusionRules}. Files git tracks are always copied, missing from the snapshot they would be committed as deleted.
+     * @return Directory holding the snapshot, usable as work tree of the repository.
+     */
+    public static File capture(Repository repository) throws IOException {
+        Path source = repository.getDirectory().toPath();
+        Path target = directory(repository).toPath();
+        Set<Path> captured = new HashSet<>();
+        ExclusionRules rules = ExclusionRules.of(repository);
+
+        SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<>() {
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                return dir.getFileName().toString().equals(".git") || rules.skipsDirectory(source.relativize(dir)) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && !rules.skipsFile(source.relativize(path), attrs.size())) {
+                    copy(path, attrs, target.resolve(source.relativize(path).toString()));
+                    captured.add(source.relativize(path));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                // Deleted while walking, so it is not part of the snapshot.
+                return FileVisitResult.CONTINUE;
+            }
+        };
+
+        // Pathspecs of a monorepo name its plugin folders, they have to exist even if empty.
+        for (Path root : repository.trackedRoots()) {
+            Files.createDirectories(target.resolve(source.relativize(root).toString()));
+            if (Files.exists(root)) {
+                Files.walkFileTree(root, visitor);
+            }
+        }
+        Path gitIgnore = source.resolve(".gitignore");
+        if (!captured.contains(source.relativize(gitIgnore)) && Files.isRegularFile(gitIgnore)) {
+            copy(gitIgnore, Files.readAttributes(gitIgnore, BasicFileAttributes.class), target.resolve(".gitignore"));
+            captured.add(source.relativize(gitIgnore));
+        }
+
+        removeStale(target, captured);
+        return target.toFile();
+    }
+
+    private static void copy(Path from, BasicFileAttributes attrs, Path to) throws IOException {
+        if (Files.isRegularFile(to, LinkOption.NOFOLLOW_LINKS)) {
+            BasicFileAttributes staged = Files.readAttributes(to, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (staged.size() == attrs.size() && staged.lastModifiedTime().equals(attrs.lastModifiedTime())) {
+                return;
+            }
+        }
+
+        Files.createDirectories(to.getParent());
+        try {
+            // Keeping the modification time is what lets the next snapshot skip the file.
+            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        } catch (NoSuchFileException e) {
+            // Deleted since it was visited.
+            Files.deleteIfExists(to);
+        }
+    }
+
+    /**
+     * Deletes staged files that are gone from the working tree. Empty directories are left, git does not see them anyway.
+     */
+    private static void removeStale(Path target, Set<Path> captured) throws IOException {
+        Files.walkFileTree(target, new SimpleFileVisitor<>() {
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                if (!captured.contains(target.relativize(path))) {
+                    Files.delete(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package gitsync;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Syncs every repository again and again with the configured interval.
+ * Repositories get evenly spread slots within the interval plus random jitter, so they do not hit remotes at the same moment.
+ */
+public class SyncScheduler {
+    private static final long MILLIS_PER_TICK = 50L;
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(5L);
+    private static final Map<String, BukkitTask> TASKS = new ConcurrentHashMap<>();
+    // Bumped by every stop, so a sync that was already running when the scheduler got restarted does not schedule itself again.
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    private SyncScheduler() {
+    }
+
+    public static void start() {
+        long period = TimeUnit.MINUTES.toMillis(Config.getInstance().getSyncInterval());
+        if (period <= 0) {
+            return;
+        }
+
+        List<Repository> repositories = Config.getInstance().getRepositories().stream().filter((repository) -> repository.isEnabled() && repository.isLocalRepoCreated()).toList();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < repositories.size(); i++) {
+            long offset = period * (i + 1) / repositories.size();
+            schedule(repositories.get(i), now + offset, period, GENERATION.get());
+        }
+        RepoService.getLogger().info(String.format("Scheduled sync of %d repos every %d minutes", repositories.size(), Config.getInstance().getSyncInterval()));
+    }
+
+    public static void stop() {
+        GENERATION.incrementAndGet();
+        TASKS.values().forEach(BukkitTask::cancel);
+        TASKS.clear();
+    }
+
+    private static void schedule(Repository repository, long slot, long period, int generation) {
+        long jitter = TimeUnit.SECONDS.toMillis(Config.getInstance().getSyncJitter());
+        scheduleAt(repository, slot + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0L), slot, period, generation);
+    }
+
+    /**
+     * Runs the sync at the time, then schedules the next slot.
+     * A sync that timed out is retried a few minutes later instead, as long as that is still before its next slot.
+     */
+    private static void scheduleAt(Repository repository, long runAt, long slot, long period, int generation) {
+        long delay = Math.max(1L, (runAt - System.currentTimeMillis()) / MILLIS_PER_TICK);
+        TASKS.put(repository.getName(), Bukkit.getScheduler().runTaskLaterAsynchronously(GitSync.getInstance(), () -> {
+            boolean finished = run(repository);
+            if (GENERATION.get() != generation) {
+                return;
+            }
+
+            long retryAt = System.currentTimeMillis() + RETRY_DELAY;
+            if (!finished && retryAt < slot + period) {
+                RepoService.getLogger().info(String.format("Sync of %s timed out, retrying in %d minutes", repository.getName(), TimeUnit.MILLISECONDS.toMinutes(RETRY_DELAY)));
+                scheduleAt(repository, retryAt, slot, period, generation);
+            } else {
+                schedule(repository, slot + period, period, generation);
+            }
+        }, delay));
+    }
+
+    /**
+     * @return If the sync is done, false if it timed out.
+     */
+    private static boolean run(Repository repository) {
+        Config.Scenario scenario = Config.getInstance().getScenarioWhileDailySync();
+        boolean[] finished = {true};
+        try {
+            if (!RepoExecutor.tryRunLocked(repository, () -> finished[0] = RepoService.syncRepository(repository, scenario))) {
+                RepoService.getLogger().info(String.format("Skipping scheduled sync of %s, it is still busy", repository.getName()));
+            }
+        } catch (RuntimeException e) {
+            RepoService.getLogger().log(Level.SEVERE, String.format("Scheduled sync of %s failed", repository.getName()), e);
+        }
+        return finished[0];
+    }
+}
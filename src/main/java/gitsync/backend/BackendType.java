@@ -0,0 +1,15 @@
+package gitsync.backend;
+
+import lombok.Getter;
+
+public enum BackendType {
+    CLI(new CliBackend()),
+    JGIT(new JGitBackend());
+
+    @Getter
+    private final GitBackend backend;
+
+    BackendType(GitBackend backend) {
+        this.backend = backend;
+    }
+}
@@ -0,0 +1,452 @@
+package gitsync.backend;
+
+import gitsync.Config;
+import gitsync.RepoService;
+import gitsync.Repository;
+import gitsync.utils.OutputReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Forks the {@code git} executable of the host for every operation.
+ */
+public class CliBackend implements GitBackend {
+    // Result messages are always printed at the end of git output, so only this many last lines per stream are kept for them.
+    public static final int OUTPUT_TAIL_LINES = 200;
+    private static final Pattern PROGRESS = Pattern.compile("^(remote: )?[A-Z][a-z]+( [a-z]+)*: +(\\d+% \\(\\d+/\\d+\\)|\\d+, done\\.).*");
+    private static final Pattern TRANSFER_DONE = Pattern.compile("^(Receiving|Writing) objects: 100% \\(\\d+/\\d+\\), ([\\d.]+) (bytes|KiB|MiB|GiB)");
+
+    /**
+     * Runs the process with the local timeout, see {@link #execute(ProcessBuilder, Consumer, long)}.
+     */
+    public static GitResult execute(ProcessBuilder processBuilder, Consumer<String> lineConsumer) {
+        return execute(processBuilder, lineConsumer, Config.getInstance().getTimeoutLocal());
+    }
+
+    /**
+     * Runs the process and streams its stdout and stderr concurrently into the consumer.
+     * Git must never wait for input nobody will give: prompts for credentials and SSH host keys are turned off, stdin is closed.
+     * If it runs longer than the timeout, it is killed with all its child processes.
+     * The process is throttled and may have to wait for others to finish first, see {@link ProcessThrottle}.
+     * @param timeout Seconds, 0 for none.
+     * @return Exit code with the last {@link #OUTPUT_TAIL_LINES} lines of stdout followed by the last lines of stderr.
+     */
+    public static GitResult execute(ProcessBuilder processBuilder, Consumer<String> lineConsumer, long timeout) {
+        File directory = processBuilder.directory();
+        if (directory != null && ProcessRegistry.isCancelled(directory)) {
+            return new GitResult(-1, List.of("Cancelled"), GitOutcome.CANCELLED);
+        }
+
+        List<String> output = new ArrayList<>();
+        int exit = -1;
+        GitOutcome outcome = GitOutcome.FAILED;
+        AtomicLong transferred = new AtomicLong();
+        // Both streams are read on their own threads, callers may collect lines into plain collections.
+        // Those threads see the config of the task that runs git.
+        Object lock = new Object();
+        Config config = Config.getInstance();
+        Consumer<String> consumer = (line) -> {
+            transferred.addAndGet(parseTransferredBytes(line));
+            synchronized (lock) {
+                Config.pin(config, () -> {
+                    lineConsumer.accept(line);
+                    return null;
+                });
+            }
+        };
+
+        Map<String, String> environment = processBuilder.environment();
+        environment.put("LC_ALL", "C");
+        environment.put("GIT_TERMINAL_PROMPT", "0");
+        environment.put("GCM_INTERACTIVE", "never");
+        environment.putIfAbsent("GIT_SSH_COMMAND", "ssh -o BatchMode=yes");
+        environment.remove("SSH_ASKPASS");
+        processBuilder.command(ProcessThrottle.wrap(processBuilder.command()));
+        Process process = null;
+        Semaphore slot = null;
+        try {
+            slot = ProcessThrottle.acquire();
+            process = processBuilder.start();
+            if (directory != null) {
+                ProcessRegistry.register(directory, process);
+            }
+            process.getOutputStream().close();
+            OutputReader outputReader = new OutputReader(process.getInputStream(), consumer, OUTPUT_TAIL_LINES).start("GitSync stdout");
+            OutputReader errorReader = new OutputReader(process.getErrorStream(), consumer, OUTPUT_TAIL_LINES).start("GitSync stderr");
+            if (timeout > 0 && !process.waitFor(timeout, TimeUnit.SECONDS)) {
+                ProcessRegistry.kill(process);
+                process.waitFor();
+                outcome = GitOutcome.TIMED_OUT;
+            } else {
+                exit = process.waitFor();
+            }
+            output.addAll(outputReader.getOutput());
+            output.addAll(errorReader.getOutput());
+        } catch (InterruptedException e) {
+            // The worker is stopping, git must not outlive it.
+            if (process != null) {
+                ProcessRegistry.kill(process);
+            }
+            Thread.currentThread().interrupt();
+            outcome = GitOutcome.CANCELLED;
+            output.add("fatal: interrupted");
+        } catch (IOException var7) {
+            var7.printStackTrace();
+        } finally {
+            ProcessThrottle.release(slot);
+            if (process != null && directory != null) {
+                ProcessRegistry.unregister(directory, process);
+            }
+        }
+
+        if (outcome == GitOutcome.CANCELLED || directory != null && ProcessRegistry.isCancelled(directory)) {
+            outcome = GitOutcome.CANCELLED;
+        } else if (outcome == GitOutcome.TIMED_OUT) {
+            output.add(String.format("fatal: killed after %d seconds", timeout));
+            exit = -1;
+        } else if (exit == 0) {
+            outcome = GitOutcome.SUCCESS;
+        }
+        return new GitResult(exit, output, outcome, transferred.get());
+    }
+
+    /**
+     * @return Bytes reported by the final progress line of a fetch or push, 0 for any other line.
+     */
+    private static long parseTransferredBytes(String line) {
+        Matcher matcher = TRANSFER_DONE.matcher(line);
+        if (!matcher.find()) {
+            return 0L;
+        }
+
+        double amount = Double.parseDouble(matcher.group(2));
+        switch (matcher.group(3)) {
+            case "KiB":
+                return (long) (amount * 1024D);
+            case "MiB":
+                return (long) (amount * 1024D * 1024D);
+            case "GiB":
+                return (long) (amount * 1024D * 1024D * 1024D);
+            default:
+                return (long) amount;
+        }
+    }
+
+    // Progress is only requested to count transferred bytes, it would just flood the log.
+    private static Consumer<String> printer(Repository repository) {
+        return (line) -> {
+            if (!PROGRESS.matcher(line).matches()) {
+                RepoService.printLine(repository, line);
+            }
+        };
+    }
+
+    private static GitResult run(Repository repository, String... command) {
+        return run(repository, Config.getInstance().getTimeoutLocal(), command);
+    }
+
+    private static GitResult run(Repository repository, long timeout, String... command) {
+        return execute(new ProcessBuilder(command).directory(repository.getDirectory().getAbsoluteFile()), printer(repository), timeout);
+    }
+
+    public GitResult init(Repository repository) {
+        return run(repository, "git", "init");
+    }
+
+    public GitResult cloneRemote(Repository repository, File target, int depth, String filter) {
+        List<String> args = new ArrayList<>(List.of("git", "clone", "--progress", "--no-checkout", "--branch", "master"));
+        if (depth > 0) {
+            args.add("--depth");
+            args.add(String.valueOf(depth));
+        }
+        if (!filter.isEmpty()) {
+            args.add("--filter=" + filter);
+        }
+        args.add(repository.getRemote());
+        args.add(target.getAbsolutePath());
+        // Run inside the plugin folder only to be found and cancelled with the rest of its work.
+        return execute(new ProcessBuilder(args).directory(repository.getDirectory().getAbsoluteFile()), printer(repository), Config.getInstance().getTimeoutNetwork());
+    }
+
+    public GitResult restoreMissing(Repository repository) {
+        GitResult result = run(repository, "git", "reset", "-q");
+        if (!result.isSuccess()) {
+            return result;
+        }
+        // Without --force existing files are kept, only missing ones are written.
+        return run(repository, "git", "checkout-index", "--all", "-q");
+    }
+
+    /**
+     * @return Command line starting git on the work tree, which is the one of the repository unless it is a snapshot elsewhere.
+     */
+    private static List<String> git(Repository repository, File workTree) {
+        File directory = repository.getDirectory().getAbsoluteFile();
+        if (workTree.getAbsoluteFile().equals(directory)) {
+            return new ArrayList<>(List.of("git"));
+        }
+        // Still started in the repository, so it is found and cancelled with the rest of its work.
+        return new ArrayList<>(List.of("git", "-C", workTree.getAbsolutePath(), "--git-dir=" + new File(directory, ".git").getAbsolutePath(), "--work-tree=" + workTree.getAbsolutePath()));
+    }
+
+    public GitResult add(Repository repository, File workTree) {
+        List<String> args = git(repository, workTree);
+        if (!repository.isScoped() && (repository.getPaths().isEmpty() || workTree.equals(repository.getDirectory()))) {
+            args.addAll(List.of("add", "."));
+            return run(repository, args.toArray(String[]::new));
+        }
+
+        args.addAll(List.of("add", "-A", "--"));
+        args.addAll(repository.getPaths());
+        // A snapshot holds the synced folders only, everything else of the monorepo would look deleted.
+        if (!repository.isScoped() && new File(workTree, ".gitignore").exists()) {
+            args.add(".gitignore");
+        }
+        return run(repository, args.toArray(String[]::new));
+    }
+
+    public GitResult commit(Repository repository, String message, File workTree, boolean amend) {
+        if (amend && execute(new ProcessBuilder("git", "diff", "--cached", "--quiet", "HEAD").directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+        }).isSuccess()) {
+            // Amending would rewrite HEAD with nothing new in it.
+            printer(repository).accept("nothing to commit, working tree clean");
+            return new GitResult(1, List.of("nothing to commit, working tree clean"), GitOutcome.NOTHING_TO_COMMIT);
+        }
+
+        List<String> args = git(repository, workTree);
+        args.addAll(List.of("commit", "-m", message));
+        if (amend) {
+            args.add("--amend");
+        }
+        GitResult result = run(repository, args.toArray(String[]::new));
+        return result.withOutcome(OutcomeParser.commit(result));
+    }
+
+    public GitResult configure(Repository repository, String item, String value) {
+        return run(repository, "git", "config", item, value);
+    }
+
+    public GitResult pull(Repository repository) {
+        GitResult result = run(repository, Config.getInstance().getTimeoutNetwork(), "git", "pull", "--progress", "--no-rebase", "--no-commit", "origin", "master");
+        return result.withOutcome(OutcomeParser.pull(result, new File(repository.getDirectory(), ".git/MERGE_HEAD").exists()));
+    }
+
+    public GitResult fetch(Repository repository, List<String> refSpecs) {
+        List<String> args = new ArrayList<>(List.of("git", "fetch", "--progress", "--prune", "origin"));
+        args.addAll(refSpecs);
+        return run(repository, Config.getInstance().getTimeoutNetwork(), args.toArray(String[]::new));
+    }
+
+    public GitResult merge(Repository repository, String revision) {
+        // Nodes of a network may have started with their own history, JGit merges those anyway.
+        GitResult result = run(repository, "git", "merge", "--no-commit", "--allow-unrelated-histories", revision);
+        return result.withOutcome(OutcomeParser.pull(result, new File(repository.getDirectory(), ".git/MERGE_HEAD").exists()));
+    }
+
+    public GitResult push(Repository repository, String remote, String branch, boolean setUpstream, boolean force) {
+        ArrayList<String> args = new ArrayList<>();
+
+        args.add("git");
+        args.add("push");
+        args.add("--porcelain");
+        args.add("--progress");
+        if (setUpstream) {
+            args.add("--set-upstream");
+        }
+        if (force) {
+            args.add("-f");
+        }
+        args.add(remote);
+        args.add(branch.equals("master") ? branch : "master:refs/heads/" + branch);
+
+        GitResult result = run(repository, Config.getInstance().getTimeoutNetwork(), args.toArray(String[]::new));
+        return result.withOutcome(OutcomeParser.push(result));
+    }
+
+    public GitResult abortMerge(Repository repository) {
+        return run(repository, "git", "merge", "--abort");
+    }
+
+    public GitResult remotes(Repository repository) {
+        return execute(new ProcessBuilder("git", "remote").directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+        });
+    }
+
+    public GitResult addRemote(Repository repository, String name, String url) {
+        return execute(new ProcessBuilder("git", "remote", "add", name, url).directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+        });
+    }
+
+    public Map<String, String> refs(Repository repository, String prefix) {
+        // Only the tail of the output is kept, a network may have more nodes than that.
+        Map<String, String> refs = new TreeMap<>();
+        GitResult result = execute(new ProcessBuilder("git", "for-each-ref", "--format=%(refname) %(objectname)", prefix).directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+            String[] fields = line.split(" ");
+            if (fields.length == 2 && fields[0].startsWith(prefix)) {
+                refs.put(fields[0], fields[1]);
+            }
+        });
+        return result.isSuccess() ? refs : new TreeMap<>();
+    }
+
+    public Set<String> trackedFiles(Repository repository) {
+        // Paths are separated by NUL, they may contain line breaks. Only the tail of the output is kept, so every line is collected here.
+        StringBuilder output = new StringBuilder();
+        GitResult result = execute(new ProcessBuilder("git", "ls-files", "-z").directory(repository.getDirectory().getAbsoluteFile()), (line) -> output.append(line).append('\n'));
+        if (!result.isSuccess()) {
+            return null;
+        }
+
+        Set<String> paths = new HashSet<>();
+        for (String path : output.toString().split("\0")) {
+            if (!path.isEmpty() && !path.equals("\n")) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    public String resolve(Repository repository, String revision) {
+        GitResult result = execute(new ProcessBuilder("git", "rev-parse", "--verify", "-q", revision).directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+        });
+        return result.isSuccess() && !result.getOutput().isEmpty() ? result.getOutput().get(0) : null;
+    }
+
+    public List<CommitInfo> history(Repository repository, int limit) {
+        List<String> args = new ArrayList<>(List.of("git", "log", "--first-parent", "-z", "--date=raw", "--format=%H%x1f%T%x1f%P%x1f%an%x1f%ae%x1f%ad%x1f%cn%x1f%ce%x1f%cd%x1f%B"));
+        if (limit > 0) {
+            args.add("-n");
+            args.add(String.valueOf(limit));
+        }
+        args.add("HEAD");
+
+        // Messages span lines and only the tail of the output is kept, so every line is collected here.
+        StringBuilder output = new StringBuilder();
+        GitResult result = execute(new ProcessBuilder(args).directory(repository.getDirectory().getAbsoluteFile()), (line) -> output.append(line).append('\n'));
+        List<CommitInfo> commits = new ArrayList<>();
+        if (!result.isSuccess()) {
+            return commits;
+        }
+
+        for (String record : output.toString().split("\0")) {
+            String[] fields = record.split("\u001f", 10);
+            if (fields.length < 10) {
+                continue;
+            }
+            // Records after the first start with the line break that ended the one before.
+            String id = fields[0].strip();
+            List<String> parents = fields[2].isEmpty() ? List.of() : List.of(fields[2].split(" "));
+            commits.add(new CommitInfo(id, fields[1], parents, fields[3], fields[4], fields[5], fields[6], fields[7], fields[8], fields[9].strip()));
+        }
+        return commits;
+    }
+
+    public boolean isAncestor(Repository repository, String ancestor, String descendant) {
+        return execute(new ProcessBuilder("git", "merge-base", "--is-ancestor", ancestor, descendant).directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+        }).isSuccess();
+    }
+
+    public int[] aheadBehind(Repository repository, String local, String upstream) {
+        GitResult result = execute(new ProcessBuilder("git", "rev-list", "--left-right", "--count", local + "..." + upstream).directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+        });
+        if (!result.isSuccess() || result.getOutput().isEmpty()) {
+            return null;
+        }
+
+        String[] counts = result.getOutput().get(0).trim().split("\\s+");
+        return counts.length == 2 ? new int[]{Integer.parseInt(counts[0]), Integer.parseInt(counts[1])} : null;
+    }
+
+    public String commitTree(Repository repository, CommitInfo template, List<String> parents) {
+        List<String> args = new ArrayList<>(List.of("git", "commit-tree", template.getTree(), "-m", template.getMessage()));
+        for (String parent : parents) {
+            args.add("-p");
+            args.add(parent);
+        }
+
+        ProcessBuilder processBuilder = new ProcessBuilder(args).directory(repository.getDirectory().getAbsoluteFile());
+        Map<String, String> environment = processBuilder.environment();
+        environment.put("GIT_AUTHOR_NAME", template.getAuthorName());
+        environment.put("GIT_AUTHOR_EMAIL", template.getAuthorEmail());
+        environment.put("GIT_AUTHOR_DATE", template.getAuthorDate());
+        environment.put("GIT_COMMITTER_NAME", template.getCommitterName());
+        environment.put("GIT_COMMITTER_EMAIL", template.getCommitterEmail());
+        environment.put("GIT_COMMITTER_DATE", template.getCommitterDate());
+        GitResult result = execute(processBuilder, (line) -> {
+        });
+        return result.isSuccess() && !result.getOutput().isEmpty() ? result.getOutput().get(0) : null;
+    }
+
+    public GitResult updateBranch(Repository repository, String commit, String expected) {
+        return run(repository, "git", "update-ref", "refs/heads/master", commit, expected);
+    }
+
+    public String remoteHead(Repository repository) {
+        GitResult result = execute(new ProcessBuilder("git", "ls-remote", "origin", "refs/heads/master").directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+        }, Config.getInstance().getTimeoutNetwork());
+        if (!result.isSuccess()) {
+            return null;
+        }
+
+        return result.getOutput().stream().filter((line) -> line.endsWith("\trefs/heads/master")).map((line) -> line.substring(0, line.indexOf('\t'))).findFirst().orElse(null);
+    }
+
+    public GitResult maintain(Repository repository, int maxPacks) {
+        long timeout = Config.getInstance().getTimeoutMaintenance();
+        List<String> output = new ArrayList<>();
+        GitResult result = run(repository, timeout, "git", "commit-graph", "write", "--reachable", "--split");
+        output.addAll(result.getOutput());
+        if (this.stats(repository).getPacks() >= maxPacks) {
+            result = run(repository, timeout, "git", "repack", "-a", "-d", "-l", "-q");
+        } else {
+            result = run(repository, timeout, "git", "repack", "-d", "-l", "-q");
+        }
+        output.addAll(result.getOutput());
+        if (result.isSuccess()) {
+            result = run(repository, timeout, "git", "prune", "--expire=2.weeks.ago");
+            output.addAll(result.getOutput());
+        }
+        if (result.isSuccess()) {
+            result = run(repository, timeout, "git", "pack-refs", "--all");
+            output.addAll(result.getOutput());
+        }
+        return new GitResult(result.getExitCode(), output, result.getOutcome());
+    }
+
+    public RepositoryStats stats(Repository repository) {
+        GitResult result = execute(new ProcessBuilder("git", "count-objects", "-v").directory(repository.getDirectory().getAbsoluteFile()), (line) -> {
+        });
+        Map<String, Long> values = new HashMap<>();
+        for (String line : result.getOutput()) {
+            int colon = line.indexOf(": ");
+            if (colon > 0) {
+                try {
+                    values.put(line.substring(0, colon), Long.parseLong(line.substring(colon + 2).trim()));
+                } catch (NumberFormatException ignored) {
+                    // Not a figure we are interested in.
+                }
+            }
+        }
+        // count-objects reports sizes in KiB
+        return new RepositoryStats(values.getOrDefault("count", 0L), values.getOrDefault("size", 0L) * 1024L, values.getOrDefault("in-pack", 0L), values.getOrDefault("packs", 0L), values.getOrDefault("size-pack", 0L) * 1024L);
+    }
+
+    public String version() {
+        return execute(new ProcessBuilder("git", "version"), (line) -> {
+        }).getOutput().stream().findFirst().orElse("unknown");
+    }
+}
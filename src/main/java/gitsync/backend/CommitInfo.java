@@ -0,0 +1,66 @@
+package gitsync.backend;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Everything needed to write a commit again with other parents.
+ * Dates are in the raw format of git, {@code <seconds since epoch> <+hhmm>}.
+ */
+@Data
+public class CommitInfo {
+    private final String id;
+    private final String tree;
+    private final List<String> parents;
+    private final String authorName;
+    private final String authorEmail;
+    private final String authorDate;
+    private final String committerName;
+    private final String committerEmail;
+    private final String committerDate;
+    private final String message;
+
+    /**
+     * @return First line of the message.
+     */
+    public String getSubject() {
+        int newline = this.message.indexOf('\n');
+        return newline < 0 ? this.message : this.message.substring(0, newline);
+    }
+
+    /**
+     * @return When the changes of the commit were first committed, in seconds since epoch.
+     */
+    public long getAuthorTime() {
+        return seconds(this.authorDate);
+    }
+
+    public long getCommitTime() {
+        return seconds(this.committerDate);
+    }
+
+    public static long seconds(String rawDate) {
+        int space = rawDate.indexOf(' ');
+        return Long.parseLong(space < 0 ? rawDate : rawDate.substring(0, space));
+    }
+
+    /**
+     * @return Offset of the raw date from UTC in minutes.
+     */
+    public static int offsetMinutes(String rawDate) {
+        int space = rawDate.indexOf(' ');
+        if (space < 0 || rawDate.length() < space + 6) {
+            return 0;
+        }
+
+        String offset = rawDate.substring(space + 1);
+        int minutes = Integer.parseInt(offset.substring(1, 3)) * 60 + Integer.parseInt(offset.substring(3, 5));
+        return offset.charAt(0) == '-' ? -minutes : minutes;
+    }
+
+    public static String rawDate(long seconds, int offsetMinutes) {
+        int absolute = Math.abs(offsetMinutes);
+        return String.format("%d %s%02d%02d", seconds, offsetMinutes < 0 ? "-" : "+", absolute / 60, absolute % 60);
+    }
+}
@@ -0,0 +1,146 @@
+package gitsync.backend;
+
+import gitsync.Repository;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Performs the git operations GitSync needs on a single repository.
+ */
+public interface GitBackend {
+    GitResult init(Repository repository);
+
+    /**
+     * Clones the remote of the repository into the target directory without checking anything out.
+     * @param depth Number of commits to fetch, 0 for the whole history.
+     * @param filter Partial clone filter such as {@code blob:none}, empty for none.
+     */
+    GitResult cloneRemote(Repository repository, File target, int depth, String filter);
+
+    /**
+     * Makes the index match {@code HEAD} and checks out files of {@code HEAD} that are missing from the working tree.
+     * Files present in the working tree are left as they are.
+     */
+    GitResult restoreMissing(Repository repository);
+
+    /**
+     * Stages every change in the working tree, deletions included.
+     */
+    default GitResult add(Repository repository) {
+        return this.add(repository, repository.getDirectory());
+    }
+
+    /**
+     * Stages every change in the given work tree instead of the one of the repository, deletions included.
+     * @param workTree Directory laid out like the working tree, such as a snapshot of it.
+     */
+    GitResult add(Repository repository, File workTree);
+
+    default GitResult commit(Repository repository, String message) {
+        return this.commit(repository, message, repository.getDirectory(), false);
+    }
+
+    /**
+     * Commits the index, checking it against the given work tree instead of the one of the repository.
+     * @param amend If {@code HEAD} is replaced by a commit with its parents, author and the index, instead of getting a child.
+     */
+    GitResult commit(Repository repository, String message, File workTree, boolean amend);
+
+    GitResult configure(Repository repository, String item, String value);
+
+    /**
+     * Fetches {@code master} from {@code origin} and merges it without committing the merge.
+     */
+    GitResult pull(Repository repository);
+
+    /**
+     * Fetches the refspecs from {@code origin}, removing tracking refs whose branch is gone from the remote.
+     */
+    GitResult fetch(Repository repository, List<String> refSpecs);
+
+    /**
+     * Merges the revision into {@code master} without committing the merge, with the same outcomes as {@link #pull(Repository)}.
+     */
+    GitResult merge(Repository repository, String revision);
+
+    default GitResult push(Repository repository, boolean setUpstream, boolean force) {
+        return this.push(repository, "origin", setUpstream, force);
+    }
+
+    default GitResult push(Repository repository, String remote, boolean setUpstream, boolean force) {
+        return this.push(repository, remote, "master", setUpstream, force);
+    }
+
+    /**
+     * Pushes {@code master} to a branch of the named remote, {@code origin} or one of {@link Repository#mirrorRemotes()}.
+     * @param branch Branch of the remote to update, {@code master} unless the server pushes to its own branch of a network.
+     */
+    GitResult push(Repository repository, String remote, String branch, boolean setUpstream, boolean force);
+
+    GitResult abortMerge(Repository repository);
+
+    /**
+     * @return Result which output holds the name of every configured remote, one per line.
+     */
+    GitResult remotes(Repository repository);
+
+    GitResult addRemote(Repository repository, String name, String url);
+
+    /**
+     * @return Every ref whose name starts with the prefix and the commit id it points to, sorted by name.
+     */
+    Map<String, String> refs(Repository repository, String prefix);
+
+    /**
+     * @return Path of every file in the index, relative to the directory of the repository, {@code null} if the index cannot be read.
+     */
+    Set<String> trackedFiles(Repository repository);
+
+    /**
+     * @return Commit id the revision points to, {@code null} if it does not resolve.
+     */
+    String resolve(Repository repository, String revision);
+
+    /**
+     * @return Commits following first parents from {@code HEAD}, newest first, empty if there is no commit yet.
+     * @param limit Maximum number of commits, 0 for all.
+     */
+    List<CommitInfo> history(Repository repository, int limit);
+
+    boolean isAncestor(Repository repository, String ancestor, String descendant);
+
+    /**
+     * Counts commits on either side, locally without talking to the remote.
+     * @return Commits reachable from {@code local} only and from {@code upstream} only, {@code null} if either does not resolve.
+     */
+    int[] aheadBehind(Repository repository, String local, String upstream);
+
+    /**
+     * Writes a commit with tree, authorship and message of the template but the given parents, without touching any branch.
+     * @return Id of the written commit, {@code null} if it could not be written.
+     */
+    String commitTree(Repository repository, CommitInfo template, List<String> parents);
+
+    /**
+     * Points {@code master} to the commit, if it still points to {@code expected}.
+     */
+    GitResult updateBranch(Repository repository, String commit, String expected);
+
+    /**
+     * Asks {@code origin} where its {@code master} points to, without fetching anything.
+     * @return Commit id of the remote master, {@code null} if it does not exist or the remote is unreachable.
+     */
+    String remoteHead(Repository repository);
+
+    /**
+     * Packs loose objects, writes the commit-graph, prunes unreachable loose objects and consolidates packs once there are more than {@code maxPacks}.
+     */
+    GitResult maintain(Repository repository, int maxPacks);
+
+    RepositoryStats stats(Repository repository);
+
+    String version();
+}
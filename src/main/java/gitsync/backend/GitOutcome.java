@@ -0,0 +1,44 @@
+package gitsync.backend;
+
+import lombok.Getter;
+
+/**
+ * What a git operation did, independent of the backend and of the language git talks in.
+ */
+public enum GitOutcome {
+    SUCCESS(true),
+    COMMITTED(true),
+    NOTHING_TO_COMMIT(false),
+    UP_TO_DATE(true),
+    FAST_FORWARDED(true),
+    /**
+     * Remote changes merged cleanly, the merge still has to be committed.
+     */
+    MERGED(true),
+    MERGE_CONFLICT(false),
+    NO_REMOTE_BRANCH(false),
+    PUSHED(true),
+    FORCE_PUSHED(true),
+    REJECTED(false),
+    NO_PERMISSION(false),
+    /**
+     * Killed after running longer than its timeout, worth trying again later.
+     */
+    TIMED_OUT(false),
+    CANCELLED(false),
+    FAILED(false);
+
+    @Getter
+    private final boolean successful;
+
+    GitOutcome(boolean successful) {
+        this.successful = successful;
+    }
+
+    /**
+     * @return If something went wrong, nothing to commit and a remote without master yet are normal states of a repo.
+     */
+    public boolean isFailure() {
+        return !this.successful && this != NOTHING_TO_COMMIT && this != NO_REMOTE_BRANCH;
+    }
+}
@@ -0,0 +1,45 @@
+package gitsync.backend;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class GitResult {
+    private final int exitCode;
+    private final List<String> output;
+    private final GitOutcome outcome;
+    /**
+     * Bytes received or sent over the network, 0 if nothing was transferred or the backend cannot tell.
+     */
+    private final long transferredBytes;
+
+    public GitResult(int exitCode, List<String> output) {
+        this(exitCode, output, exitCode == 0 ? GitOutcome.SUCCESS : GitOutcome.FAILED);
+    }
+
+    public GitResult(int exitCode, List<String> output, GitOutcome outcome) {
+        this(exitCode, output, outcome, 0L);
+    }
+
+    public GitResult(int exitCode, List<String> output, GitOutcome outcome, long transferredBytes) {
+        this.exitCode = exitCode;
+        this.output = output;
+        this.outcome = outcome;
+        this.transferredBytes = transferredBytes;
+    }
+
+    public boolean isSuccess() {
+        return this.exitCode == 0;
+    }
+
+    /**
+     * @return Result with the outcome, unless git was killed: its output says nothing then and the result keeps being timed out or cancelled.
+     */
+    public GitResult withOutcome(GitOutcome outcome) {
+        if (this.outcome == GitOutcome.TIMED_OUT || this.outcome == GitOutcome.CANCELLED) {
+            return this;
+        }
+        return new GitResult(this.exitCode, this.output, outcome, this.transferredBytes);
+    }
+}
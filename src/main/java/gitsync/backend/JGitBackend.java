@@ -0,0 +1,592 @@
+package gitsync.backend;
+
+import gitsync.Config;
+import gitsync.RepoService;
+import gitsync.Repository;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.CreateBranchCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.RmCommand;
+import org.eclipse.jgit.api.TransportCommand;
+import org.eclipse.jgit.api.errors.CanceledException;
+import org.eclipse.jgit.api.errors.EmptyCommitException;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs git operations in-process through JGit, so no {@code git} executable and no process start is needed.
+ * Outcomes are known from the JGit result types directly, output lines only mimic the messages of the git CLI for the log.
+ * Only transports bundled with JGit core are available (file, http and https), credentials are taken from the remote URL.
+ */
+public class JGitBackend implements GitBackend {
+    private static final String REMOTE = "origin";
+    private static final String BRANCH = "master";
+    private static final String REMOTE_BRANCH_REF = Constants.R_REMOTES + REMOTE + "/" + BRANCH;
+
+    private static GitResult result(Repository repository, GitOutcome outcome, String... output) {
+        List<String> lines = Arrays.asList(output);
+        lines.forEach((line) -> RepoService.printLine(repository, line));
+        return new GitResult(outcome.isSuccessful() ? 0 : 1, lines, outcome);
+    }
+
+    private static GitResult failure(Repository repository, Exception e) {
+        if (ProcessRegistry.isCancelled(repository.getDirectory()) || e instanceof CanceledException) {
+            return result(repository, GitOutcome.CANCELLED, "fatal: cancelled");
+        }
+        String message = e.getMessage() == null ? "" : e.getMessage();
+        if (e instanceof TransportException && message.toLowerCase(Locale.ROOT).contains("timed out")) {
+            return result(repository, GitOutcome.TIMED_OUT, String.format("fatal: %s", message));
+        }
+        return result(repository, GitOutcome.FAILED, String.format("fatal: %s", message));
+    }
+
+    private static Git open(Repository repository) throws IOException {
+        // Nothing may start after the work of the repository was cancelled.
+        if (ProcessRegistry.isCancelled(repository.getDirectory())) {
+            throw new IOException("cancelled");
+        }
+        return Git.open(repository.getDirectory().getAbsoluteFile());
+    }
+
+    /**
+     * Opens the repository with another work tree, such as a snapshot of its working tree.
+     */
+    private static org.eclipse.jgit.lib.Repository open(Repository repository, File workTree) throws IOException {
+        if (ProcessRegistry.isCancelled(repository.getDirectory())) {
+            throw new IOException("cancelled");
+        }
+        return new FileRepositoryBuilder().setGitDir(new File(repository.getDirectory().getAbsoluteFile(), Constants.DOT_GIT)).setWorkTree(workTree.getAbsoluteFile()).setMustExist(true).build();
+    }
+
+    /**
+     * Lets a running transfer of the repository stop at its next progress update once it is cancelled.
+     */
+    private static ProgressMonitor cancellable(Repository repository) {
+        return new EmptyProgressMonitor() {
+            public boolean isCancelled() {
+                return ProcessRegistry.isCancelled(repository.getDirectory());
+            }
+        };
+    }
+
+    /**
+     * Sets up a network command: credentials from the remote URL and the network timeout, which JGit applies to every read and write of the connection.
+     */
+    private static <C extends TransportCommand<C, ?>> C transport(C command, Repository repository) {
+        return transport(command, repository.getRemote());
+    }
+
+    private static <C extends TransportCommand<C, ?>> C transport(C command, String url) {
+        command.setTimeout((int) Math.min(Integer.MAX_VALUE, Config.getInstance().getTimeoutNetwork()));
+        try {
+            URIish uri = new URIish(url);
+            if (uri.getUser() != null && uri.getPass() != null) {
+                command.setCredentialsProvider(new UsernamePasswordCredentialsProvider(uri.getUser(), uri.getPass()));
+            }
+        } catch (URISyntaxException ignored) {
+            // Not an URL we can take credentials from, let the transport decide.
+        }
+        return command;
+    }
+
+    private static int countChangedFiles(org.eclipse.jgit.lib.Repository repository, ObjectId from, ObjectId to) throws IOException {
+        try (RevWalk walk = new RevWalk(repository); ObjectReader reader = repository.newObjectReader(); DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            formatter.setRepository(repository);
+            AbstractTreeIterator oldTree = from == null ? new EmptyTreeIterator() : new CanonicalTreeParser(null, reader, walk.parseCommit(from).getTree());
+            AbstractTreeIterator newTree = new CanonicalTreeParser(null, reader, walk.parseCommit(to).getTree());
+            return formatter.scan(oldTree, newTree).size();
+        }
+    }
+
+    public GitResult init(Repository repository) {
+        try (Git git = Git.init().setDirectory(repository.getDirectory().getAbsoluteFile()).setInitialBranch(BRANCH).call()) {
+            return result(repository, GitOutcome.SUCCESS, String.format("Initialized empty Git repository in %s", git.getRepository().getDirectory()));
+        } catch (GitAPIException e) {
+            return failure(repository, e);
+        }
+    }
+
+    /**
+     * JGit cannot clone shallow nor partial, so depth and filter are ignored and the whole history is fetched.
+     */
+    public GitResult cloneRemote(Repository repository, File target, int depth, String filter) {
+        try (Git git = transport(Git.cloneRepository(), repository).setProgressMonitor(cancellable(repository)).setURI(repository.getRemote()).setDirectory(target).setBranch(BRANCH).setNoCheckout(true).call()) {
+            // Without checkout JGit leaves the local branch unborn, point it to the cloned one.
+            if (git.getRepository().exactRef(Constants.R_HEADS + BRANCH) == null && git.getRepository().exactRef(REMOTE_BRANCH_REF) != null) {
+                git.branchCreate().setName(BRANCH).setStartPoint(REMOTE_BRANCH_REF).setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK).call();
+            }
+            return result(repository, GitOutcome.SUCCESS, String.format("Cloned %s into %s", repository.getRemote(), git.getRepository().getDirectory()));
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public GitResult restoreMissing(Repository repository) {
+        try (Git git = open(repository)) {
+            git.reset().setMode(ResetCommand.ResetType.MIXED).call();
+            Set<String> missing = git.status().call().getMissing();
+            if (!missing.isEmpty()) {
+                git.checkout().addPaths(new ArrayList<>(missing)).call();
+            }
+            return result(repository, GitOutcome.SUCCESS);
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public GitResult add(Repository repository, File workTree) {
+        try (org.eclipse.jgit.lib.Repository repo = open(repository, workTree); Git git = Git.wrap(repo)) {
+            AddCommand add = git.add();
+            AddCommand update = git.add().setUpdate(true);
+            List<String> patterns = new ArrayList<>(repository.getPaths());
+            if (!repository.isScoped() && (patterns.isEmpty() || workTree.equals(repository.getDirectory()))) {
+                patterns = List.of(".");
+            } else if (!repository.isScoped() && new File(workTree, ".gitignore").exists()) {
+                // A snapshot holds the synced folders only, everything else of the monorepo would look deleted.
+                patterns.add(".gitignore");
+            }
+            for (String pattern : patterns) {
+                add.addFilepattern(pattern);
+                update.addFilepattern(pattern);
+            }
+            add.call();
+            update.call();
+            return result(repository, GitOutcome.SUCCESS);
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public GitResult commit(Repository repository, String message, File workTree, boolean amend) {
+        try (org.eclipse.jgit.lib.Repository repo = open(repository, workTree); Git git = Git.wrap(repo)) {
+            if (amend && git.diff().setCached(true).setShowNameAndStatusOnly(true).call().isEmpty()) {
+                // Amending would rewrite HEAD with nothing new in it.
+                return result(repository, GitOutcome.NOTHING_TO_COMMIT, "nothing to commit, working tree clean");
+            }
+            // An amend is never empty, its changes are the ones of HEAD plus the index.
+            RevCommit commit = git.commit().setMessage(message).setAmend(amend).setAllowEmpty(amend).call();
+            return result(repository, GitOutcome.COMMITTED, String.format("[%s %s] %s", git.getRepository().getBranch(), commit.abbreviate(7).name(), commit.getShortMessage()));
+        } catch (EmptyCommitException e) {
+            return result(repository, GitOutcome.NOTHING_TO_COMMIT, "nothing to commit, working tree clean");
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public GitResult configure(Repository repository, String item, String value) {
+        int firstDot = item.indexOf('.');
+        int lastDot = item.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot == item.length() - 1) {
+            return result(repository, GitOutcome.FAILED, String.format("error: key does not contain a section: %s", item));
+        }
+
+        try (Git git = open(repository)) {
+            StoredConfig config = git.getRepository().getConfig();
+            String subsection = firstDot == lastDot ? null : item.substring(firstDot + 1, lastDot);
+            config.setString(item.substring(0, firstDot), subsection, item.substring(lastDot + 1), value);
+            config.save();
+            return result(repository, GitOutcome.SUCCESS);
+        } catch (IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public GitResult pull(Repository repository) {
+        try (Git git = open(repository)) {
+            FetchResult fetch = transport(git.fetch(), repository).setProgressMonitor(cancellable(repository)).setRemote(REMOTE).setRefSpecs(new RefSpec(String.format("+%s*:%s%s/*", Constants.R_HEADS, Constants.R_REMOTES, REMOTE))).call();
+            if (fetch.getAdvertisedRef(Constants.R_HEADS + BRANCH) == null) {
+                return result(repository, GitOutcome.NO_REMOTE_BRANCH, "fatal: couldn't find remote ref master");
+            }
+
+            return merge(git, repository, git.getRepository().exactRef(REMOTE_BRANCH_REF));
+        } catch (TransportException e) {
+            String message = e.getMessage() == null ? "" : e.getMessage();
+            if (!ProcessRegistry.isCancelled(repository.getDirectory()) && (message.contains("not authorized") || message.contains("not found") || message.contains("Authentication"))) {
+                return result(repository, GitOutcome.NO_PERMISSION, String.format("fatal: %s", message));
+            }
+            return failure(repository, e);
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public GitResult fetch(Repository repository, List<String> refSpecs) {
+        try (Git git = open(repository)) {
+            transport(git.fetch(), repository).setProgressMonitor(cancellable(repository)).setRemote(REMOTE).setRefSpecs(refSpecs.stream().map(RefSpec::new).toList()).setRemoveDeletedRefs(true).call();
+            return result(repository, GitOutcome.SUCCESS);
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public GitResult merge(Repository repository, String revision) {
+        try (Git git = open(repository)) {
+            Ref ref = git.getRepository().findRef(revision);
+            if (ref == null) {
+                return result(repository, GitOutcome.FAILED, String.format("merge: %s - not something we can merge", revision));
+            }
+            return merge(git, repository, ref);
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    private static GitResult merge(Git git, Repository repository, Ref ref) throws GitAPIException, IOException {
+        ObjectId oldHead = git.getRepository().resolve(Constants.HEAD);
+        MergeResult merge = git.merge().include(ref).setCommit(false).setFastForward(MergeCommand.FastForwardMode.FF).call();
+        switch (merge.getMergeStatus()) {
+            case ALREADY_UP_TO_DATE:
+                return result(repository, GitOutcome.UP_TO_DATE, "Already up to date.");
+            case FAST_FORWARD:
+                int changed = countChangedFiles(git.getRepository(), oldHead, merge.getNewHead());
+                return result(repository, GitOutcome.FAST_FORWARDED, "Fast-forward", String.format(" %d %s changed", changed, changed == 1 ? "file" : "files"));
+            case MERGED_NOT_COMMITTED:
+                return result(repository, GitOutcome.MERGED, "Automatic merge went well; stopped before committing as requested");
+            case CONFLICTING:
+                List<String> output = new ArrayList<>();
+                merge.getConflicts().keySet().forEach((path) -> output.add(String.format("CONFLICT (content): Merge conflict in %s", path)));
+                output.add("Automatic merge failed; fix conflicts and then commit the result.");
+                return result(repository, GitOutcome.MERGE_CONFLICT, output.toArray(String[]::new));
+            default:
+                return result(repository, merge.getMergeStatus().isSuccessful() ? GitOutcome.SUCCESS : GitOutcome.FAILED, String.format("Merge %s", merge.getMergeStatus()));
+        }
+    }
+
+    public GitResult push(Repository repository, String remote, String branch, boolean setUpstream, boolean force) {
+        try (Git git = open(repository)) {
+            RefSpec refSpec = new RefSpec(Constants.R_HEADS + BRANCH + ":" + Constants.R_HEADS + branch);
+            List<String> output = new ArrayList<>();
+            GitOutcome outcome = GitOutcome.UP_TO_DATE;
+            String url = remote.equals(REMOTE) ? repository.getRemote() : repository.mirrorRemotes().getOrDefault(remote, "");
+            for (PushResult pushResult : transport(git.push(), url).setProgressMonitor(cancellable(repository)).setRemote(remote).setRefSpecs(refSpec).setForce(force).call()) {
+                RemoteRefUpdate update = pushResult.getRemoteUpdate(Constants.R_HEADS + branch);
+                if (update == null) {
+                    continue;
+                }
+
+                switch (update.getStatus()) {
+                    case UP_TO_DATE:
+                        output.add("Everything up-to-date");
+                        break;
+                    case OK:
+                        if (pushResult.getAdvertisedRef(Constants.R_HEADS + branch) == null) {
+                            outcome = GitOutcome.PUSHED;
+                            output.add(String.format(" * [new branch]      %s -> %s", BRANCH, branch));
+                        } else if (force && !update.isFastForward()) {
+                            outcome = GitOutcome.FORCE_PUSHED;
+                            output.add(String.format(" + %s %s -> %s (forced update)", update.getNewObjectId().abbreviate(7).name(), BRANCH, branch));
+                        } else {
+                            outcome = GitOutcome.PUSHED;
+                            output.add(String.format("   %s  %s -> %s", update.getNewObjectId().abbreviate(7).name(), BRANCH, branch));
+                        }
+                        break;
+                    default:
+                        outcome = GitOutcome.REJECTED;
+                        output.add(String.format(" ! [rejected]        %s -> %s (%s)", BRANCH, branch, update.getMessage() == null ? update.getStatus() : update.getMessage()));
+                        output.add(String.format("error: failed to push some refs to '%s'", pushResult.getURI()));
+                }
+            }
+
+            if (outcome.isSuccessful() && setUpstream) {
+                StoredConfig config = git.getRepository().getConfig();
+                config.setString("branch", BRANCH, "remote", remote);
+                config.setString("branch", BRANCH, "merge", Constants.R_HEADS + branch);
+                config.save();
+                output.add(String.format("Branch '%s' set up to track remote branch '%s' from '%s'.", BRANCH, branch, remote));
+            }
+
+            return result(repository, outcome, output.toArray(String[]::new));
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    /**
+     * Like {@code git merge --abort}, only the paths the merge touched are restored, other uncommitted changes stay.
+     * Merges never commit on their own here, so HEAD still is the commit the merge started from.
+     */
+    public GitResult abortMerge(Repository repository) {
+        try (Git git = open(repository)) {
+            org.eclipse.jgit.lib.Repository repo = git.getRepository();
+            List<ObjectId> mergeHeads = repo.readMergeHeads();
+            if (mergeHeads == null || mergeHeads.isEmpty()) {
+                return result(repository, GitOutcome.FAILED, "fatal: There is no merge to abort (MERGE_HEAD missing).");
+            }
+
+            ObjectId head = repo.resolve(Constants.HEAD);
+            List<String> restored = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            try (RevWalk walk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+                if (head == null) {
+                    treeWalk.addTree(new EmptyTreeIterator());
+                } else {
+                    treeWalk.addTree(walk.parseCommit(head).getTree());
+                }
+                for (ObjectId mergeHead : mergeHeads) {
+                    treeWalk.addTree(walk.parseCommit(mergeHead).getTree());
+                }
+                while (treeWalk.next()) {
+                    (treeWalk.getFileMode(0) == FileMode.MISSING ? removed : restored).add(treeWalk.getPathString());
+                }
+            }
+
+            if (!restored.isEmpty()) {
+                git.checkout().setStartPoint(Constants.HEAD).addPaths(restored).call();
+            }
+            if (!removed.isEmpty()) {
+                RmCommand rm = git.rm();
+                removed.forEach(rm::addFilepattern);
+                rm.call();
+            }
+            repo.writeMergeHeads(null);
+            repo.writeMergeCommitMsg(null);
+            return result(repository, GitOutcome.SUCCESS);
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public GitResult remotes(Repository repository) {
+        try (Git git = open(repository)) {
+            return new GitResult(0, git.remoteList().call().stream().map(RemoteConfig::getName).toList());
+        } catch (GitAPIException | IOException e) {
+            return new GitResult(128, List.of(String.format("fatal: %s", e.getMessage())));
+        }
+    }
+
+    public GitResult addRemote(Repository repository, String name, String url) {
+        try (Git git = open(repository)) {
+            git.remoteAdd().setName(name).setUri(new URIish(url)).call();
+            return new GitResult(0, List.of());
+        } catch (GitAPIException | IOException | URISyntaxException e) {
+            return new GitResult(128, List.of(String.format("fatal: %s", e.getMessage())));
+        }
+    }
+
+    public Map<String, String> refs(Repository repository, String prefix) {
+        Map<String, String> refs = new TreeMap<>();
+        try (Git git = open(repository)) {
+            for (Ref ref : git.getRepository().getRefDatabase().getRefsByPrefix(prefix)) {
+                if (ref.getObjectId() != null) {
+                    refs.put(ref.getName(), ref.getObjectId().name());
+                }
+            }
+        } catch (IOException e) {
+            RepoService.printLine(repository, String.format("fatal: %s", e.getMessage()));
+        }
+        return refs;
+    }
+
+    public Set<String> trackedFiles(Repository repository) {
+        try (Git git = open(repository)) {
+            DirCache index = git.getRepository().readDirCache();
+            Set<String> paths = new HashSet<>();
+            for (int i = 0; i < index.getEntryCount(); i++) {
+                paths.add(index.getEntry(i).getPathString());
+            }
+            return paths;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public String resolve(Repository repository, String revision) {
+        try (Git git = open(repository)) {
+            ObjectId id = git.getRepository().resolve(revision);
+            return id == null ? null : id.name();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String rawDate(PersonIdent ident) {
+        return CommitInfo.rawDate(ident.getWhen().getTime() / 1000L, ident.getTimeZoneOffset());
+    }
+
+    private static PersonIdent ident(String name, String email, String rawDate) {
+        return new PersonIdent(name, email, CommitInfo.seconds(rawDate) * 1000L, CommitInfo.offsetMinutes(rawDate));
+    }
+
+    public List<CommitInfo> history(Repository repository, int limit) {
+        List<CommitInfo> commits = new ArrayList<>();
+        try (Git git = open(repository); RevWalk walk = new RevWalk(git.getRepository())) {
+            ObjectId head = git.getRepository().resolve(Constants.HEAD);
+            RevCommit commit = head == null ? null : walk.parseCommit(head);
+            while (commit != null && (limit <= 0 || commits.size() < limit)) {
+                List<String> parents = Arrays.stream(commit.getParents()).map(ObjectId::name).toList();
+                PersonIdent author = commit.getAuthorIdent();
+                PersonIdent committer = commit.getCommitterIdent();
+                commits.add(new CommitInfo(commit.name(), commit.getTree().name(), parents, author.getName(), author.getEmailAddress(), rawDate(author),
+                        committer.getName(), committer.getEmailAddress(), rawDate(committer), commit.getFullMessage().strip()));
+                commit = commit.getParentCount() == 0 ? null : walk.parseCommit(commit.getParent(0));
+            }
+        } catch (IOException e) {
+            RepoService.printLine(repository, String.format("fatal: %s", e.getMessage()));
+        }
+        return commits;
+    }
+
+    public boolean isAncestor(Repository repository, String ancestor, String descendant) {
+        try (Git git = open(repository); RevWalk walk = new RevWalk(git.getRepository())) {
+            ObjectId ancestorId = git.getRepository().resolve(ancestor);
+            ObjectId descendantId = git.getRepository().resolve(descendant);
+            return ancestorId != null && descendantId != null && walk.isMergedInto(walk.parseCommit(ancestorId), walk.parseCommit(descendantId));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int[] aheadBehind(Repository repository, String local, String upstream) {
+        try (Git git = open(repository); RevWalk walk = new RevWalk(git.getRepository())) {
+            ObjectId localId = git.getRepository().resolve(local);
+            ObjectId upstreamId = git.getRepository().resolve(upstream);
+            if (localId == null || upstreamId == null) {
+                return null;
+            }
+            return new int[]{count(walk, localId, upstreamId), count(walk, upstreamId, localId)};
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int count(RevWalk walk, ObjectId from, ObjectId excluded) throws IOException {
+        walk.reset();
+        walk.markStart(walk.parseCommit(from));
+        walk.markUninteresting(walk.parseCommit(excluded));
+        int count = 0;
+        while (walk.next() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    public String commitTree(Repository repository, CommitInfo template, List<String> parents) {
+        try (Git git = open(repository); ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            CommitBuilder builder = new CommitBuilder();
+            builder.setTreeId(ObjectId.fromString(template.getTree()));
+            builder.setParentIds(parents.stream().map(ObjectId::fromString).toList());
+            builder.setAuthor(ident(template.getAuthorName(), template.getAuthorEmail(), template.getAuthorDate()));
+            builder.setCommitter(ident(template.getCommitterName(), template.getCommitterEmail(), template.getCommitterDate()));
+            builder.setMessage(template.getMessage() + "\n");
+            ObjectId id = inserter.insert(builder);
+            inserter.flush();
+            return id.name();
+        } catch (IOException e) {
+            RepoService.printLine(repository, String.format("fatal: %s", e.getMessage()));
+            return null;
+        }
+    }
+
+    public GitResult updateBranch(Repository repository, String commit, String expected) {
+        try (Git git = open(repository)) {
+            RefUpdate update = git.getRepository().updateRef(Constants.R_HEADS + BRANCH);
+            update.setNewObjectId(ObjectId.fromString(commit));
+            update.setExpectedOldObjectId(ObjectId.fromString(expected));
+            update.setForceUpdate(true);
+            RefUpdate.Result status = update.update();
+            if (status == RefUpdate.Result.FORCED || status == RefUpdate.Result.FAST_FORWARD || status == RefUpdate.Result.NO_CHANGE) {
+                return result(repository, GitOutcome.SUCCESS);
+            }
+            return result(repository, GitOutcome.FAILED, String.format("fatal: cannot update %s: %s", BRANCH, status));
+        } catch (IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public String remoteHead(Repository repository) {
+        try (Git git = open(repository)) {
+            return transport(git.lsRemote(), repository).setRemote(REMOTE).setHeads(true).callAsMap().entrySet().stream()
+                    .filter((entry) -> entry.getKey().equals(Constants.R_HEADS + BRANCH))
+                    .map((entry) -> entry.getValue().getObjectId().name())
+                    .findFirst().orElse(null);
+        } catch (GitAPIException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * JGit has no incremental repack nor commit-graph, so this runs a full gc which keeps unreachable objects for two weeks.
+     * It runs in-process, so of the throttling only the thread limit applies.
+     */
+    public GitResult maintain(Repository repository, int maxPacks) {
+        try (Git git = open(repository)) {
+            if (Config.getInstance().getThrottleGitThreads() > 0) {
+                // Only in memory, gc takes its pack settings from the config of the repository.
+                git.getRepository().getConfig().setInt("pack", null, "threads", Config.getInstance().getThrottleGitThreads());
+            }
+            git.gc().setExpire(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(14L))).call();
+            return result(repository, GitOutcome.SUCCESS);
+        } catch (GitAPIException | IOException e) {
+            return failure(repository, e);
+        }
+    }
+
+    public RepositoryStats stats(Repository repository) {
+        try (Git git = open(repository)) {
+            Properties statistics = git.gc().getStatistics();
+            return new RepositoryStats(
+                    ((Number) statistics.get("numberOfLooseObjects")).longValue(),
+                    ((Number) statistics.get("sizeOfLooseObjects")).longValue(),
+                    ((Number) statistics.get("numberOfPackedObjects")).longValue(),
+                    ((Number) statistics.get("numberOfPackFiles")).longValue(),
+                    ((Number) statistics.get("sizeOfPackedObjects")).longValue());
+        } catch (GitAPIException | IOException e) {
+            return new RepositoryStats(0L, 0L, 0L, 0L, 0L);
+        }
+    }
+
+    public String version() {
+        String version = Git.class.getPackage().getImplementationVersion();
+        return String.format("jgit version %s", version == null ? "unknown" : version);
+    }
+}
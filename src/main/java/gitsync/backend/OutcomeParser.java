@@ -0,0 +1,107 @@
+package gitsync.backend;
+
+/**
+ * Classifies git CLI results in a single pass over their output.
+ * Relies on exit codes first, then on porcelain output and on messages of the C locale, which every process is started with.
+ */
+public class OutcomeParser {
+    private OutcomeParser() {
+    }
+
+    public static GitOutcome commit(GitResult result) {
+        switch (result.getExitCode()) {
+            case 0:
+                return GitOutcome.COMMITTED;
+            case 1:
+                return GitOutcome.NOTHING_TO_COMMIT;
+            default:
+                return GitOutcome.FAILED;
+        }
+    }
+
+    /**
+     * @param mergeInProgress If {@code MERGE_HEAD} exists after the pull, so it stopped before committing a merge.
+     */
+    public static GitOutcome pull(GitResult result, boolean mergeInProgress) {
+        boolean upToDate = false;
+        boolean conflict = false;
+        boolean noRemoteBranch = false;
+        boolean noPermission = false;
+
+        for (String line : result.getOutput()) {
+            if (line.startsWith("Already up to date") || line.startsWith("Already up-to-date")) {
+                upToDate = true;
+            } else if (line.startsWith("CONFLICT") || line.startsWith("Automatic merge failed")) {
+                conflict = true;
+            } else if (line.startsWith("fatal: couldn't find remote ref")) {
+                noRemoteBranch = true;
+            } else if (isPermissionProblem(line)) {
+                noPermission = true;
+            }
+        }
+
+        if (result.isSuccess()) {
+            if (mergeInProgress) {
+                return GitOutcome.MERGED;
+            }
+            return upToDate ? GitOutcome.UP_TO_DATE : GitOutcome.FAST_FORWARDED;
+        } else if (conflict || mergeInProgress) {
+            return GitOutcome.MERGE_CONFLICT;
+        } else if (noRemoteBranch) {
+            return GitOutcome.NO_REMOTE_BRANCH;
+        } else if (noPermission) {
+            return GitOutcome.NO_PERMISSION;
+        }
+        return GitOutcome.FAILED;
+    }
+
+    /**
+     * Expects the output of {@code git push --porcelain}, where every ref is reported as {@code <flag>\t<from>:<to>\t<summary>}.
+     */
+    public static GitOutcome push(GitResult result) {
+        boolean updated = false;
+        boolean forced = false;
+        boolean rejected = false;
+        boolean noPermission = false;
+
+        for (String line : result.getOutput()) {
+            if (line.length() > 1 && line.charAt(1) == '\t') {
+                switch (line.charAt(0)) {
+                    case ' ':
+                    case '*':
+                    case '-':
+                        updated = true;
+                        break;
+                    case '+':
+                        forced = true;
+                        break;
+                    case '!':
+                        rejected = true;
+                        break;
+                    default:
+                        break;
+                }
+            } else if (isPermissionProblem(line)) {
+                noPermission = true;
+            }
+        }
+
+        if (rejected) {
+            return GitOutcome.REJECTED;
+        } else if (!result.isSuccess()) {
+            return noPermission ? GitOutcome.NO_PERMISSION : GitOutcome.FAILED;
+        } else if (forced) {
+            return GitOutcome.FORCE_PUSHED;
+        }
+        return updated ? GitOutcome.PUSHED : GitOutcome.UP_TO_DATE;
+    }
+
+    private static boolean isPermissionProblem(String line) {
+        return line.startsWith("remote: The project you were looking for could not be found")
+                || line.startsWith("fatal: Could not read from remote repository")
+                || line.startsWith("fatal: Authentication failed")
+                || (line.startsWith("fatal: repository '") && line.endsWith("' not found"))
+                || line.startsWith("ERROR: Permission to")
+                || line.contains("Permission denied");
+    }
+}
@@ -0,0 +1,70 @@
+package gitsync.backend;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows which git processes run in which repository directory, so work of a repository can be cancelled.
+ * A cancelled directory stays cancelled until the next task of it starts: the current one fails fast at every following git step instead of starting new ones.
+ */
+public class ProcessRegistry {
+    private static final Map<String, Set<Process>> RUNNING = new ConcurrentHashMap<>();
+    private static final Set<String> CANCELLED = ConcurrentHashMap.newKeySet();
+
+    private ProcessRegistry() {
+    }
+
+    private static String key(File directory) {
+        return directory.getAbsolutePath();
+    }
+
+    static void register(File directory, Process process) {
+        RUNNING.computeIfAbsent(key(directory), (key) -> ConcurrentHashMap.newKeySet()).add(process);
+        // Cancelled between the check and the start.
+        if (isCancelled(directory)) {
+            kill(process);
+        }
+    }
+
+    static void unregister(File directory, Process process) {
+        Set<Process> processes = RUNNING.get(key(directory));
+        if (processes != null) {
+            processes.remove(process);
+        }
+    }
+
+    public static boolean isCancelled(File directory) {
+        return CANCELLED.contains(key(directory));
+    }
+
+    /**
+     * Kills every git process running in the directory and makes further git steps in it fail until {@link #reset(File)}.
+     * @return How many processes were killed.
+     */
+    public static int cancel(File directory) {
+        CANCELLED.add(key(directory));
+        Set<Process> processes = RUNNING.getOrDefault(key(directory), Set.of());
+        int killed = 0;
+        for (Process process : processes) {
+            if (process.isAlive()) {
+                kill(process);
+                killed++;
+            }
+        }
+        return killed;
+    }
+
+    public static void reset(File directory) {
+        CANCELLED.remove(key(directory));
+    }
+
+    /**
+     * Kills the process with everything it started, like ssh or credential helpers that would keep its output open.
+     */
+    static void kill(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
@@ -0,0 +1,96 @@
+package gitsync.backend;
+
+import gitsync.Config;
+import gitsync.RepoService;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Keeps git processes from competing with the server for cores and disk.
+ * Commands are started through {@code taskset}, {@code ionice} and {@code nice} as configured, git gets its thread pools capped,
+ * and no more than {@code throttle.maxProcesses} processes run at once across all repositories.
+ * Tools missing on the host (any of them on Windows) are skipped.
+ */
+public class ProcessThrottle {
+    private static final Map<String, Boolean> AVAILABLE = new ConcurrentHashMap<>();
+    private static Semaphore slots;
+    private static int slotCount;
+
+    private ProcessThrottle() {
+    }
+
+    private static boolean isAvailable(String tool) {
+        return AVAILABLE.computeIfAbsent(tool, (name) -> {
+            String path = System.getenv("PATH");
+            if (File.separatorChar != '/' || path == null) {
+                return false;
+            }
+
+            for (String directory : path.split(File.pathSeparator)) {
+                if (new File(directory, name).canExecute()) {
+                    return true;
+                }
+            }
+            RepoService.getLogger().warning(String.format("%s is not installed, git processes are started without it", name));
+            return false;
+        });
+    }
+
+    /**
+     * @return The command prefixed with the configured priority tools, with thread limits added if it is git.
+     */
+    public static List<String> wrap(List<String> command) {
+        Config config = Config.getInstance();
+        List<String> wrapped = new ArrayList<>();
+        if (!config.getThrottleCpus().isEmpty() && isAvailable("taskset")) {
+            wrapped.addAll(List.of("taskset", "-c", config.getThrottleCpus()));
+        }
+        if (config.getThrottleIoClass() != Config.IoClass.NONE && isAvailable("ionice")) {
+            wrapped.addAll(config.getThrottleIoClass() == Config.IoClass.IDLE ? List.of("ionice", "-c", "3") : List.of("ionice", "-c", "2", "-n", String.valueOf(config.getThrottleIoLevel())));
+        }
+        if (config.getThrottleNice() > 0 && isAvailable("nice")) {
+            wrapped.addAll(List.of("nice", "-n", String.valueOf(config.getThrottleNice())));
+        }
+
+        wrapped.addAll(command);
+        int git = wrapped.size() - command.size();
+        if (config.getThrottleGitThreads() > 0 && !command.isEmpty() && command.get(0).equals("git")) {
+            String threads = String.valueOf(config.getThrottleGitThreads());
+            wrapped.addAll(git + 1, List.of("-c", "pack.threads=" + threads, "-c", "index.threads=" + threads));
+        }
+        return wrapped;
+    }
+
+    /**
+     * Waits until fewer than the configured number of processes run.
+     * @return Slot to hand back to {@link #release(Semaphore)} once the process exited, {@code null} if there is no limit.
+     */
+    public static Semaphore acquire() throws InterruptedException {
+        Semaphore semaphore = slots();
+        if (semaphore != null) {
+            semaphore.acquire();
+        }
+        return semaphore;
+    }
+
+    public static void release(Semaphore semaphore) {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    // A reload may change the limit, processes running meanwhile hand their slot back to the semaphore they took it from.
+    private static synchronized Semaphore slots() {
+        int count = Config.getInstance().getThrottleMaxProcesses();
+        if (count != slotCount) {
+            slotCount = count;
+            slots = count > 0 ? new Semaphore(count, true) : null;
+        }
+        return slots;
+    }
+}
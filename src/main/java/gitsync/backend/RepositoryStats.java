@@ -0,0 +1,19 @@
+package gitsync.backend;
+
+import lombok.Data;
+
+/**
+ * Object database figures of a repository, sizes are in bytes.
+ */
+@Data
+public class RepositoryStats {
+    private final long looseObjects;
+    private final long looseSize;
+    private final long packedObjects;
+    private final long packs;
+    private final long packSize;
+
+    public String toString() {
+        return String.format("%d loose (%d KiB), %d packed in %d packs (%d KiB)", this.looseObjects, this.looseSize / 1024L, this.packedObjects, this.packs, this.packSize / 1024L);
+    }
+}
@@ -0,0 +1,57 @@
+package gitsync.command;
+
+import gitsync.Config;
+import gitsync.GitSync;
+import gitsync.RepoExecutor;
+import gitsync.Repository;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+
+import java.util.List;
+
+public class CancelCommand implements CommandExecutor, TabCompleter {
+    public boolean onCommand(CommandSender commandSender, Command command, String s, String[] args) {
+        if (!commandSender.hasPermission("gs.cancel")) {
+            commandSender.sendMessage(ChatColor.DARK_RED + "Not enough permissions to do that!");
+            return true;
+        }
+
+        if (!GitSync.checkReady(commandSender)) {
+            return true;
+        }
+
+        if (args.length == 0) {
+            commandSender.sendMessage(ChatColor.DARK_RED + "Should be specified one of repos to cancel!");
+            return false;
+        }
+
+        Repository repository = Config.getInstance().findRepoByName(args[0]);
+        if (repository == null) {
+            commandSender.sendMessage(ChatColor.DARK_RED + String.format("Can't find repo with name %s", args[0]));
+            return false;
+        }
+
+        int cancelled = RepoExecutor.cancel(repository);
+        if (cancelled == 0) {
+            commandSender.sendMessage(ChatColor.YELLOW + String.format("Nothing is running or queued for %s", repository.getName()));
+            return true;
+        }
+
+        GitSync.getInstance().getLogger().info(String.format("Cancelled %d git operations of %s. Applier: %s", cancelled, repository.getName(), commandSender.getName()));
+        commandSender.sendMessage(ChatColor.GREEN + String.format("Cancelled %d git operations of %s", cancelled, repository.getName()));
+        return true;
+    }
+
+    public List<String> onTabComplete(CommandSender commandSender, Command command, String s, String[] args) {
+        if (commandSender.hasPermission("gs.cancel")) {
+            if (args.length == 1) {
+                return Config.getInstance().completeRepoNames(args[0], false);
+            }
+        }
+
+        return null;
+    }
+}
@@ -2,6 +2,7 @@ package gitsync.command;
 
 import gitsync.Config;
 import gitsync.GitSync;
+import gitsync.RepoExecutor;
 import gitsync.RepoService;
 import gitsync.Repository;
 import org.bukkit.ChatColor;
@@ -11,11 +12,14 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class ForcePushCommand implements CommandExecutor, TabCompleter {
     public boolean onCommand(CommandSender commandSender, Command command, String s, String[] args) {
         if (commandSender.hasPermission("gs.push")) {
+            if (!GitSync.checkReady(commandSender)) {
+                return true;
+            }
+
             if (args.length == 0) {
                 commandSender.sendMessage(ChatColor.DARK_RED + "Should be specified one of repos to push!");
                 return false;
@@ -36,7 +40,7 @@ public class ForcePushCommand implements CommandExecutor, TabCompleter {
             }
 
             GitSync.getInstance().getLogger().info(String.format("Trying to push force. Applier: %s", commandSender.getName()));
-            RepoService.add(repository);
+            String commitMessage;
             if (args.length > 2 && args[1].equals("message")) {
                 List<String> argsWithoutFirstTwo = new ArrayList<>(Arrays.asList(args));
                 argsWithoutFirstTwo.remove(0);
@@ -48,36 +52,14 @@ public class ForcePushCommand implements CommandExecutor, TabCompleter {
                     part = var9.next();
                 }
 
-                RepoService.commit(repository, "'[server update]' " + customMessage);
+                commitMessage = "'[server update]' " + customMessage;
             } else {
-                RepoService.commit(repository, "'[server update]'");
-            }
-
-            List<String> output = RepoService.push(repository, false, true);
-            if (RepoService.isOutputContains(output, "Everything up-to-date")) {
-                var10001 = ChatColor.GREEN;
-                commandSender.sendMessage("" + var10001 + String.format("No forced changes in local repo of %s detected. Remote repos is already up-to-date", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("No changes forced in local repo of %s detected. Remote repos is already up-to-date. Applier: %s", repository.getName(), commandSender.getName()));
-                return true;
-            }
-
-            if (RepoService.isOutputContains(output, "forced update")) {
-                var10001 = ChatColor.GREEN;
-                commandSender.sendMessage("" + var10001 + String.format("Force push successfully applied for %s", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("Force push successfully applied for %s. Applier: %s", repository.getName(), commandSender.getName()));
-                return true;
+                commitMessage = "'[server update]'";
             }
 
-            if (RepoService.isOutputContains(output, "failed to push some refs")) {
-                var10001 = ChatColor.DARK_RED;
-                commandSender.sendMessage("" + var10001 + String.format("Not allowed to apply force push for %s (branch protected)", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("Not allowed to apply force push for %s (branch protected). Applier: %s", repository.getName(), commandSender.getName()));
-                return true;
-            }
-
-            var10001 = ChatColor.YELLOW;
-            commandSender.sendMessage("" + var10001 + String.format("Unknown type of output for system. Please check output by yourself to validate that is everything is OK (%s)", repository.getName()));
-            GitSync.getInstance().getLogger().info(String.format("Unknown type of output for system. Please check output by yourself to validate that is everything is OK (%s). Applier: %s", repository.getName(), commandSender.getName()));
+            commandSender.sendMessage(ChatColor.GRAY + String.format("Pushing %s...", repository.getName()));
+            String applier = commandSender.getName();
+            RepoExecutor.submit(repository, String.format("force push with message %s", commitMessage), () -> this.forcePush(repository, commitMessage, applier), commandSender, (messages) -> messages.forEach(commandSender::sendMessage));
         } else {
             commandSender.sendMessage(ChatColor.DARK_RED + "Not enough permissions to do that!");
         }
@@ -85,11 +67,36 @@ public class ForcePushCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    private List<String> forcePush(Repository repository, String commitMessage, String applier) {
+        List<String> messages = new ArrayList<>();
+        RepoService.commitChanges(repository, commitMessage);
+
+        switch (RepoService.push(repository, false, true).getOutcome()) {
+            case UP_TO_DATE:
+                messages.add(ChatColor.GREEN + String.format("No forced changes in local repo of %s detected. Remote repos is already up-to-date", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("No changes forced in local repo of %s detected. Remote repos is already up-to-date. Applier: %s", repository.getName(), applier));
+                break;
+            case FORCE_PUSHED:
+            case PUSHED:
+                messages.add(ChatColor.GREEN + String.format("Force push successfully applied for %s", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("Force push successfully applied for %s. Applier: %s", repository.getName(), applier));
+                break;
+            case REJECTED:
+                messages.add(ChatColor.DARK_RED + String.format("Not allowed to apply force push for %s (branch protected)", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("Not allowed to apply force push for %s (branch protected). Applier: %s", repository.getName(), applier));
+                break;
+            default:
+                messages.add(ChatColor.YELLOW + String.format("Unknown type of output for system. Please check output by yourself to validate that is everything is OK (%s)", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("Unknown type of output for system. Please check output by yourself to validate that is everything is OK (%s). Applier: %s", repository.getName(), applier));
+        }
+
+        return messages;
+    }
+
     public List<String> onTabComplete(CommandSender commandSender, Command command, String s, String[] args) {
         if (commandSender.hasPermission("gs.push")) {
-            List<String> reposNames = Config.getInstance().getRepositories().stream().filter((repository) -> repository.isEnabled() && !repository.getRemote().equals("empty")).map(Repository::getName).toList();
             if (args.length == 1) {
-                return reposNames.stream().filter((string) -> string.startsWith(args[0])).collect(Collectors.toList());
+                return Config.getInstance().completeRepoNames(args[0], true);
             }
 
             if (args.length == 2) {
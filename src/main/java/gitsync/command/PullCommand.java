@@ -2,6 +2,7 @@ package gitsync.command;
 
 import gitsync.Config;
 import gitsync.GitSync;
+import gitsync.RepoExecutor;
 import gitsync.RepoService;
 import gitsync.Repository;
 import org.bukkit.ChatColor;
@@ -10,12 +11,16 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class PullCommand implements CommandExecutor, TabCompleter {
     public boolean onCommand(CommandSender commandSender, Command command, String s, String[] args) {
         if (commandSender.hasPermission("gs.pull")) {
+            if (!GitSync.checkReady(commandSender)) {
+                return true;
+            }
+
             if (args.length == 0) {
                 commandSender.sendMessage(ChatColor.DARK_RED + "Should be specified one of repos to pull!");
                 return false;
@@ -36,45 +41,9 @@ public class PullCommand implements CommandExecutor, TabCompleter {
             }
 
             GitSync.getInstance().getLogger().info(String.format("Trying to pull. Applier: %s", commandSender.getName()));
-            RepoService.add(repository);
-            RepoService.commit(repository, "'[server update]'");
-            List<String> output = RepoService.pull(repository);
-            if (RepoService.isOutputContains(output, "Automatic merge failed")) {
-                var10001 = ChatColor.DARK_RED;
-                commandSender.sendMessage("" + var10001 + String.format("Can't merge remote and local to sync them, will abort merge for %s", repository.getName()));
-                RepoService.abortMerge(repository);
-                var10001 = ChatColor.YELLOW;
-                commandSender.sendMessage("" + var10001 + String.format("Merge for pull of %s is aborted, use manual push and pull again", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("Automatic merge failed and aborted for %s. Applier: %s", repository.getName(), commandSender.getName()));
-                return true;
-            }
-
-            if (RepoService.isOutputContains(output, "Automatic merge went well; stopped before committing as requested")) {
-                RepoService.commit(repository, "'[merged]'");
-                RepoService.push(repository, false, false);
-                var10001 = ChatColor.GREEN;
-                commandSender.sendMessage("" + var10001 + String.format("Successful pull of %s to local repo, also automatic merge and push applied", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("Successful pull of %s to local repo, also automatic merge and push applied. Applier: %s", repository.getName(), commandSender.getName()));
-                return true;
-            }
-
-            if (RepoService.isOutputContains(output, "files changed") || RepoService.isOutputContains(output, "file changed")) {
-                var10001 = ChatColor.GREEN;
-                commandSender.sendMessage("" + var10001 + String.format("Successful pull of %s to local repo", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("Successful pull of %s to local repo. Applier: %s", repository.getName(), commandSender.getName()));
-                return true;
-            }
-
-            if (RepoService.isOutputContains(output, "Already up to date.")) {
-                var10001 = ChatColor.GREEN;
-                commandSender.sendMessage("" + var10001 + String.format("No changes in remote repo of %s detected. Local repos is already up-to-date", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("No changes in remote repo of %s detected. Local repos is already up-to-date. Applier: %s", repository.getName(), commandSender.getName()));
-                return true;
-            }
-
-            var10001 = ChatColor.YELLOW;
-            commandSender.sendMessage("" + var10001 + String.format("Unknown type of output for system. Please check output by yourself to validate that is everything is OK (%s)", repository.getName()));
-            GitSync.getInstance().getLogger().info(String.format("Unknown type of output for system. Please check output by yourself to validate that is everything is OK (%s). Applier: %s", repository.getName(), commandSender.getName()));
+            commandSender.sendMessage(ChatColor.GRAY + String.format("Pulling %s...", repository.getName()));
+            String applier = commandSender.getName();
+            RepoExecutor.submit(repository, "pull", () -> this.pull(repository, applier), commandSender, (messages) -> messages.forEach(commandSender::sendMessage));
         } else {
             commandSender.sendMessage(ChatColor.DARK_RED + "Not enough permissions to do that!");
         }
@@ -82,11 +51,50 @@ public class PullCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    private List<String> pull(Repository repository, String applier) {
+        List<String> messages = new ArrayList<>();
+        RepoService.commitChanges(repository, "'[server update]'");
+
+        switch (RepoService.pull(repository).getOutcome()) {
+            case MERGE_CONFLICT:
+                messages.add(ChatColor.DARK_RED + String.format("Can't merge remote and local to sync them, will abort merge for %s", repository.getName()));
+                RepoService.abortMerge(repository);
+                messages.add(ChatColor.YELLOW + String.format("Merge for pull of %s is aborted, use manual push and pull again", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("Automatic merge failed and aborted for %s. Applier: %s", repository.getName(), applier));
+                break;
+            case MERGED:
+                RepoService.commit(repository, "'[merged]'");
+                RepoService.push(repository, false, false);
+                messages.add(ChatColor.GREEN + String.format("Successful pull of %s to local repo, also automatic merge and push applied", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("Successful pull of %s to local repo, also automatic merge and push applied. Applier: %s", repository.getName(), applier));
+                break;
+            case FAST_FORWARDED:
+                messages.add(ChatColor.GREEN + String.format("Successful pull of %s to local repo", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("Successful pull of %s to local repo. Applier: %s", repository.getName(), applier));
+                break;
+            case UP_TO_DATE:
+                messages.add(ChatColor.GREEN + String.format("No changes in remote repo of %s detected. Local repos is already up-to-date", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("No changes in remote repo of %s detected. Local repos is already up-to-date. Applier: %s", repository.getName(), applier));
+                break;
+            case TIMED_OUT:
+                messages.add(ChatColor.DARK_RED + String.format("Pull of %s took too long and was stopped, try again later", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("Pull of %s timed out. Applier: %s", repository.getName(), applier));
+                break;
+            case CANCELLED:
+                messages.add(ChatColor.YELLOW + String.format("Pull of %s was cancelled", repository.getName()));
+                break;
+            default:
+                messages.add(ChatColor.YELLOW + String.format("Unknown type of output for system. Please check output by yourself to validate that is everything is OK (%s)", repository.getName()));
+                GitSync.getInstance().getLogger().info(String.format("Unknown type of output for system. Please check output by yourself to validate that is everything is OK (%s). Applier: %s", repository.getName(), applier));
+        }
+
+        return messages;
+    }
+
     public List<String> onTabComplete(CommandSender commandSender, Command command, String s, String[] args) {
         if (commandSender.hasPermission("gs.pull")) {
-            List<String> reposNames = Config.getInstance().getRepositories().stream().filter((repository) -> repository.isEnabled() && !repository.getRemote().equals("empty")).map(Repository::getName).toList();
             if (args.length == 1) {
-                return reposNames.stream().filter((string) -> string.startsWith(args[0])).collect(Collectors.toList());
+                return Config.getInstance().completeRepoNames(args[0], true);
             }
         }
 
@@ -0,0 +1,32 @@
+package gitsync.command;
+
+import gitsync.Config;
+import gitsync.GitSync;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+public class ReloadCommand implements CommandExecutor {
+    public boolean onCommand(CommandSender commandSender, Command command, String s, String[] args) {
+        if (!commandSender.hasPermission("gs.reload")) {
+            commandSender.sendMessage(ChatColor.DARK_RED + "Not enough permissions to do that!");
+            return true;
+        }
+
+        GitSync.getInstance().getLogger().info(String.format("Reloading config. Applier: %s", commandSender.getName()));
+        boolean started = GitSync.getInstance().reload((success) -> {
+            if (success) {
+                commandSender.sendMessage(ChatColor.GREEN + String.format("Config reloaded, %d repos known", Config.getInstance().getRepositories().size()));
+            } else {
+                commandSender.sendMessage(ChatColor.DARK_RED + "Reload failed, the previous config stays in use. Check the console");
+            }
+        });
+        if (started) {
+            commandSender.sendMessage(ChatColor.GRAY + "Reloading config...");
+        } else {
+            commandSender.sendMessage(ChatColor.YELLOW + "GitSync is still starting or reloading, try again in a moment");
+        }
+        return true;
+    }
+}
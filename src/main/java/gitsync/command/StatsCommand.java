@@ -0,0 +1,62 @@
+package gitsync.command;
+
+import gitsync.Config;
+import gitsync.Repository;
+import gitsync.metrics.Phase;
+import gitsync.metrics.SyncMetrics;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class StatsCommand implements CommandExecutor, TabCompleter {
+    public boolean onCommand(CommandSender commandSender, Command command, String s, String[] args) {
+        if (!commandSender.hasPermission("gs.stats")) {
+            commandSender.sendMessage(ChatColor.DARK_RED + "Not enough permissions to do that!");
+            return true;
+        }
+
+        String name = null;
+        if (args.length > 0) {
+            Repository repository = Config.getInstance().findRepoByName(args[0]);
+            if (repository == null) {
+                commandSender.sendMessage(ChatColor.DARK_RED + String.format("Can't find repo with name %s", args[0]));
+                return false;
+            }
+            name = repository.getName();
+        }
+
+        Map<Phase, SyncMetrics.PhaseStats> snapshot = SyncMetrics.snapshot(name);
+        String scope = name == null ? "all repos" : name;
+        if (snapshot.isEmpty()) {
+            commandSender.sendMessage(ChatColor.YELLOW + String.format("No git operations recorded for %s yet", scope));
+            return true;
+        }
+
+        commandSender.sendMessage(ChatColor.GOLD + String.format("Git operations of %s since startup:", scope));
+        snapshot.forEach((phase, stats) -> commandSender.sendMessage(ChatColor.GRAY + String.format("%s: %d ok, %d failed, avg %d ms, p50 %s, p95 %s%s",
+                phase.toString().toLowerCase(Locale.ROOT), stats.getSuccesses(), stats.getFailures(), stats.getAverageMillis(),
+                bound(stats.getPercentileMillis(0.5D)), bound(stats.getPercentileMillis(0.95D)),
+                stats.getTransferredBytes() > 0 ? String.format(", %d KiB transferred", stats.getTransferredBytes() / 1024L) : "")));
+        return true;
+    }
+
+    private static String bound(long millis) {
+        return millis == Long.MAX_VALUE ? String.format(">%d ms", SyncMetrics.BUCKETS[SyncMetrics.BUCKETS.length - 1]) : String.format("<=%d ms", millis);
+    }
+
+    public List<String> onTabComplete(CommandSender commandSender, Command command, String s, String[] args) {
+        if (commandSender.hasPermission("gs.stats")) {
+            if (args.length == 1) {
+                return Config.getInstance().completeRepoNames(args[0], false);
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package gitsync.command;
+
+import gitsync.Config;
+import gitsync.GitSync;
+import gitsync.RemoteStatus;
+import gitsync.RepoExecutor;
+import gitsync.Repository;
+import gitsync.backend.GitOutcome;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class StatusCommand implements CommandExecutor, TabCompleter {
+    public boolean onCommand(CommandSender commandSender, Command command, String s, String[] args) {
+        if (!commandSender.hasPermission("gs.status")) {
+            commandSender.sendMessage(ChatColor.DARK_RED + "Not enough permissions to do that!");
+            return true;
+        }
+
+        if (args.length == 0) {
+            // Only what is known already, looking at every remote would take a while.
+            List<Repository> repositories = Config.getInstance().getRepositories().stream().filter((repository) -> repository.isEnabled() && !repository.getRemote().equals("empty")).toList();
+            if (repositories.isEmpty()) {
+                commandSender.sendMessage(ChatColor.YELLOW + "No repos with a remote to show");
+                return true;
+            }
+
+            commandSender.sendMessage(ChatColor.GOLD + "Repos against their remotes, as last seen:");
+            repositories.forEach((repository) -> commandSender.sendMessage(describe(repository, RemoteStatus.get(repository))));
+            return true;
+        }
+
+        if (!GitSync.checkReady(commandSender)) {
+            return true;
+        }
+
+        Repository repository = Config.getInstance().findRepoByName(args[0]);
+        if (repository == null) {
+            commandSender.sendMessage(ChatColor.DARK_RED + String.format("Can't find repo with name %s", args[0]));
+            return false;
+        }
+
+        if (repository.getRemote().equals("empty")) {
+            commandSender.sendMessage(ChatColor.YELLOW + String.format("Repo %s has no remote", repository.getName()));
+            return true;
+        }
+
+        commandSender.sendMessage(ChatColor.GRAY + String.format("Looking at the remote of %s...", repository.getName()));
+        RepoExecutor.submit(repository, "status", () -> RemoteStatus.probe(repository), commandSender, (status) -> commandSender.sendMessage(describe(repository, status)));
+        return true;
+    }
+
+    private static String describe(Repository repository, RemoteStatus status) {
+        if (status == null) {
+            return ChatColor.GRAY + String.format("%s: not looked at yet", repository.getName());
+        }
+
+        String counts = status.getAhead() < 0 ? "never fetched" : String.format("%d ahead, %d behind", status.getAhead(), status.getBehind());
+        String remote;
+        if (status.getRemoteHead() == null) {
+            remote = ", remote has no master or is unreachable";
+        } else if (!status.isRemoteUnchanged()) {
+            remote = ", remote moved since last fetch";
+        } else {
+            remote = "";
+        }
+        Map<String, GitOutcome> pushes = RemoteStatus.lastPushes(repository);
+        String pushed = pushes.isEmpty() ? "" : ", last pushes: " + pushes.entrySet().stream().map((entry) -> String.format("%s %s", entry.getKey(), entry.getValue())).collect(Collectors.joining(", "));
+        boolean clean = status.isRemoteUnchanged() && status.getAhead() == 0 && status.getBehind() == 0 && !RemoteStatus.isMirrorBehind(repository);
+        return (clean ? ChatColor.GREEN : ChatColor.YELLOW) + String.format("%s: %s%s%s (%d min ago)", repository.getName(), counts, remote, pushed, TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - status.getCheckedAt()));
+    }
+
+    public List<String> onTabComplete(CommandSender commandSender, Command command, String s, String[] args) {
+        if (commandSender.hasPermission("gs.status")) {
+            if (args.length == 1) {
+                return Config.getInstance().completeRepoNames(args[0], true);
+            }
+        }
+
+        return null;
+    }
+}
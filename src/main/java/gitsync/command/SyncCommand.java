@@ -2,6 +2,7 @@ package gitsync.command;
 
 import gitsync.Config;
 import gitsync.GitSync;
+import gitsync.RepoExecutor;
 import gitsync.RepoService;
 import gitsync.Repository;
 import org.bukkit.ChatColor;
@@ -11,11 +12,14 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class SyncCommand implements CommandExecutor, TabCompleter {
     public boolean onCommand(CommandSender commandSender, Command command, String s, String[] args) {
         if (commandSender.hasPermission("gs.sync")) {
+            if (!GitSync.checkReady(commandSender)) {
+                return true;
+            }
+
             if (args.length == 0) {
                 commandSender.sendMessage(ChatColor.DARK_RED + "Should be specified one of repos to push!");
                 return false;
@@ -35,7 +39,7 @@ public class SyncCommand implements CommandExecutor, TabCompleter {
                 return false;
             }
 
-            RepoService.add(repository);
+            String commitMessage;
             if (args.length > 2 && args[1].equals("message")) {
                 List<String> argsWithoutFirstTwo = new ArrayList<>(Arrays.asList(args));
                 argsWithoutFirstTwo.remove(0);
@@ -47,20 +51,14 @@ public class SyncCommand implements CommandExecutor, TabCompleter {
                     part = var9.next();
                 }
 
-                RepoService.commit(repository, "'[server update]' " + customMessage);
+                commitMessage = "'[server update]' " + customMessage;
             } else {
-                RepoService.commit(repository, "'[server update]'");
+                commitMessage = "'[server update]'";
             }
 
-            if (RepoService.favorableSync(repository)) {
-                var10001 = ChatColor.GREEN;
-                commandSender.sendMessage("" + var10001 + String.format("Sync for %s repo successfully applied", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("Sync for %s repo successfully applied. Applier: %s", repository.getName(), commandSender.getName()));
-            } else {
-                var10001 = ChatColor.DARK_RED;
-                commandSender.sendMessage("" + var10001 + String.format("Sync can't be applied because of reasons like conflict in local merge of %s and etc. Use manual push and pull, but your changes in remote will be overwrited!", repository.getName()));
-                GitSync.getInstance().getLogger().info(String.format("Sync for repo %s failed. Applier: %s", repository.getName(), commandSender.getName()));
-            }
+            commandSender.sendMessage(ChatColor.GRAY + String.format("Syncing %s...", repository.getName()));
+            String applier = commandSender.getName();
+            RepoExecutor.submit(repository, String.format("sync with message %s", commitMessage), () -> this.sync(repository, commitMessage, applier), commandSender, (messages) -> messages.forEach(commandSender::sendMessage));
         } else {
             commandSender.sendMessage(ChatColor.DARK_RED + "Not enough permissions to do that!");
         }
@@ -68,11 +66,25 @@ public class SyncCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    private List<String> sync(Repository repository, String commitMessage, String applier) {
+        List<String> messages = new ArrayList<>();
+        RepoService.commitChanges(repository, commitMessage);
+
+        if (RepoService.favorableSync(repository)) {
+            messages.add(ChatColor.GREEN + String.format("Sync for %s repo successfully applied", repository.getName()));
+            GitSync.getInstance().getLogger().info(String.format("Sync for %s repo successfully applied. Applier: %s", repository.getName(), applier));
+        } else {
+            messages.add(ChatColor.DARK_RED + String.format("Sync can't be applied because of reasons like conflict in local merge of %s and etc. Use manual push and pull, but your changes in remote will be overwrited!", repository.getName()));
+            GitSync.getInstance().getLogger().info(String.format("Sync for repo %s failed. Applier: %s", repository.getName(), applier));
+        }
+
+        return messages;
+    }
+
     public List<String> onTabComplete(CommandSender commandSender, Command command, String s, String[] args) {
         if (commandSender.hasPermission("gs.sync")) {
-            List<String> reposNames = Config.getInstance().getRepositories().stream().filter((repository) -> repository.isEnabled() && !repository.getRemote().equals("empty")).map(Repository::getName).toList();
             if (args.length == 1) {
-                return reposNames.stream().filter((string) -> string.startsWith(args[0])).collect(Collectors.toList());
+                return Config.getInstance().completeRepoNames(args[0], true);
             }
 
             if (args.length == 2) {
@@ -0,0 +1,48 @@
+package gitsync.metrics;
+
+import gitsync.Config;
+import gitsync.Repository;
+import org.bstats.bukkit.Metrics;
+import org.bstats.charts.AdvancedPie;
+import org.bstats.charts.SimplePie;
+import org.bstats.charts.SingleLineChart;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Custom bStats charts. bStats asks for chart values once per submission, counters are reported as the difference to the previous one.
+ */
+public class MetricsCharts {
+    private static final Map<Phase, Long> REPORTED_OPERATIONS = new EnumMap<>(Phase.class);
+    private static final Map<Phase, Long> REPORTED_FAILURES = new EnumMap<>(Phase.class);
+
+    private MetricsCharts() {
+    }
+
+    public static void register(Metrics metrics) {
+        metrics.addCustomChart(new SingleLineChart("git_operations", () -> (int) delta(REPORTED_OPERATIONS, false).values().stream().mapToLong(Long::longValue).sum()));
+        metrics.addCustomChart(new AdvancedPie("failed_git_operations", () -> {
+            Map<String, Integer> values = new HashMap<>();
+            delta(REPORTED_FAILURES, true).forEach((phase, failures) -> {
+                if (failures > 0) {
+                    values.put(phase.toString().toLowerCase(Locale.ROOT), failures.intValue());
+                }
+            });
+            return values;
+        }));
+        metrics.addCustomChart(new SimplePie("git_backend", () -> Config.getInstance().getRepositories().stream().filter(Repository::isEnabled).map((repository) -> repository.getBackend().toString()).distinct().sorted().reduce((left, right) -> left + "+" + right).orElse("none")));
+    }
+
+    private static synchronized Map<Phase, Long> delta(Map<Phase, Long> reported, boolean failures) {
+        Map<Phase, Long> delta = new EnumMap<>(Phase.class);
+        SyncMetrics.snapshot(null).forEach((phase, stats) -> {
+            long total = failures ? stats.getFailures() : stats.getCount();
+            delta.put(phase, total - reported.getOrDefault(phase, 0L));
+            reported.put(phase, total);
+        });
+        return delta;
+    }
+}
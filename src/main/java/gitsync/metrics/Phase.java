@@ -0,0 +1,20 @@
+package gitsync.metrics;
+
+public enum Phase {
+    INIT,
+    CLONE,
+    REMOTE,
+    ADD,
+    COMMIT,
+    PULL,
+    PUSH,
+    /**
+     * Push to a mirror remote, alongside the push to {@code origin}.
+     */
+    MIRROR,
+    /**
+     * Merge of a node branch into master by the coordinator of a network.
+     */
+    MERGE,
+    MAINTENANCE
+}
@@ -0,0 +1,127 @@
+package gitsync.metrics;
+
+import gitsync.GitLog;
+import gitsync.Repository;
+import gitsync.backend.GitResult;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Latency histograms, success and failure counters and transferred bytes of every git phase, per repository.
+ * Every recorded phase is also summarized in the git log.
+ */
+public class SyncMetrics {
+    /**
+     * Upper bounds in milliseconds of the histogram buckets, the last bucket takes everything above.
+     */
+    public static final long[] BUCKETS = {10L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L, 30000L, 60000L};
+    private static final Map<String, Map<Phase, PhaseStats>> STATS = new ConcurrentHashMap<>();
+
+    private SyncMetrics() {
+    }
+
+    /**
+     * Runs the phase and records how long it took and how it went.
+     */
+    public static GitResult record(Repository repository, Phase phase, Supplier<GitResult> operation) {
+        long start = System.nanoTime();
+        GitResult result = null;
+        try {
+            result = operation.get();
+            return result;
+        } finally {
+            long millis = (System.nanoTime() - start) / 1_000_000L;
+            boolean success = result != null && !result.getOutcome().isFailure();
+            long transferred = result == null ? 0L : result.getTransferredBytes();
+            stats(repository.getName(), phase).record(millis, success, transferred);
+            GitLog.summary(repository, phase, result, millis);
+        }
+    }
+
+    private static PhaseStats stats(String repository, Phase phase) {
+        return STATS.computeIfAbsent(repository, (name) -> new ConcurrentHashMap<>()).computeIfAbsent(phase, (key) -> new PhaseStats());
+    }
+
+    /**
+     * @return Stats of every phase of the repository, {@code null} for all repositories together.
+     */
+    public static Map<Phase, PhaseStats> snapshot(String repository) {
+        Map<Phase, PhaseStats> snapshot = new EnumMap<>(Phase.class);
+        STATS.forEach((name, phases) -> {
+            if (repository == null || repository.equals(name)) {
+                phases.forEach((phase, stats) -> snapshot.computeIfAbsent(phase, (key) -> new PhaseStats()).add(stats));
+            }
+        });
+        return snapshot;
+    }
+
+    public static class PhaseStats {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final LongAdder transferredBytes = new LongAdder();
+
+        private void record(long millis, boolean success, long transferred) {
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+                bucket++;
+            }
+            this.buckets.incrementAndGet(bucket);
+            (success ? this.successes : this.failures).increment();
+            this.totalMillis.add(millis);
+            this.transferredBytes.add(transferred);
+        }
+
+        private void add(PhaseStats other) {
+            for (int i = 0; i < this.buckets.length(); i++) {
+                this.buckets.addAndGet(i, other.buckets.get(i));
+            }
+            this.successes.add(other.getSuccesses());
+            this.failures.add(other.getFailures());
+            this.totalMillis.add(other.totalMillis.sum());
+            this.transferredBytes.add(other.getTransferredBytes());
+        }
+
+        public long getSuccesses() {
+            return this.successes.sum();
+        }
+
+        public long getFailures() {
+            return this.failures.sum();
+        }
+
+        public long getCount() {
+            return this.getSuccesses() + this.getFailures();
+        }
+
+        public long getTransferredBytes() {
+            return this.transferredBytes.sum();
+        }
+
+        public long getAverageMillis() {
+            long count = this.getCount();
+            return count == 0 ? 0L : this.totalMillis.sum() / count;
+        }
+
+        /**
+         * @return Upper bound of the bucket the percentile falls into, {@link Long#MAX_VALUE} if it is above the last bound.
+         */
+        public long getPercentileMillis(double percentile) {
+            long target = (long) Math.ceil(this.getCount() * percentile);
+            long seen = 0L;
+            for (int i = 0; i < this.buckets.length(); i++) {
+                seen += this.buckets.get(i);
+                if (seen >= target) {
+                    return i < BUCKETS.length ? BUCKETS[i] : Long.MAX_VALUE;
+                }
+            }
+            return 0L;
+        }
+    }
+}
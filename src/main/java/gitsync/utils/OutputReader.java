@@ -4,42 +4,61 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.Consumer;
 
-public class OutputReader {
+/**
+ * Drains a process stream on its own thread, so stdout and stderr are read at the same time and the child never stalls on a full pipe.
+ * Every line goes to the consumer as soon as it is read, only the last {@code tailSize} lines are kept.
+ */
+public class OutputReader implements Runnable {
     private final InputStream inputStream;
+    private final Consumer<String> lineConsumer;
+    private final int tailSize;
+    private final Deque<String> tail = new ArrayDeque<>();
+    private Thread thread;
 
-    public OutputReader(InputStream inputStream) {
+    public OutputReader(InputStream inputStream, Consumer<String> lineConsumer, int tailSize) {
         this.inputStream = inputStream;
+        this.lineConsumer = lineConsumer;
+        this.tailSize = tailSize;
     }
 
-    public List<String> getOutput() {
-        List<String> output = new ArrayList<>();
-
-        try {
-            BufferedReader br = new BufferedReader(new InputStreamReader(this.inputStream));
+    public OutputReader start(String name) {
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+        return this;
+    }
 
+    public void run() {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(this.inputStream, StandardCharsets.UTF_8))) {
             String line;
-            try {
-                while ((line = br.readLine()) != null) {
-                    output.add(line);
+            while ((line = br.readLine()) != null) {
+                this.lineConsumer.accept(line);
+                if (this.tail.size() == this.tailSize) {
+                    this.tail.removeFirst();
                 }
-            } catch (Throwable var6) {
-                try {
-                    br.close();
-                } catch (Throwable var5) {
-                    var6.addSuppressed(var5);
-                }
-
-                throw var6;
+                this.tail.addLast(line);
             }
-
-            br.close();
         } catch (IOException var7) {
             var7.printStackTrace();
         }
+    }
+
+    /**
+     * Waits until the stream is fully drained.
+     * @return The last lines of the stream.
+     */
+    public List<String> getOutput() throws InterruptedException {
+        if (this.thread != null) {
+            this.thread.join();
+        }
 
-        return output;
+        return new ArrayList<>(this.tail);
     }
 }
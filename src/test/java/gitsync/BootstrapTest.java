@@ -0,0 +1,62 @@
+package gitsync;
+
+import gitsync.backend.BackendType;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BootstrapTest {
+    @TempDir
+    Path root;
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void bootstrapThenSync(BackendType type) throws IOException {
+        File remote = TestRepos.bareRemote(this.root);
+        File other = TestRepos.clone(this.root, "other", remote);
+        TestRepos.commit(other, "config.yml", "a: remote\n");
+        TestRepos.commit(other, "messages.yml", "m: remote\n");
+        TestRepos.git(other, "push", "-q", "origin", "master");
+
+        Repository repository = TestRepos.repository(this.root, "plugin", remote, type);
+        // Files the server already has win over the ones of the remote.
+        TestRepos.write(repository.getDirectory(), "config.yml", "a: local\n");
+        Config.publish(Config.builder().repository(repository).bootstrapEnabled(true).bootstrapDepth(0).build());
+
+        RepoService.createReposWhereNeeded(this.root.toFile());
+        assertTrue(repository.isLocalRepoCreated());
+        assertEquals("m: remote\n", TestRepos.read(repository.getDirectory(), "messages.yml"));
+        assertEquals("a: local\n", TestRepos.read(repository.getDirectory(), "config.yml"));
+
+        RepoService.linkRemotesAndLocals();
+        assertTrue(RepoService.syncRepository(repository, Config.Scenario.ALL));
+        assertEquals("a: local", TestRepos.git(remote, "show", "master:config.yml"));
+        assertEquals(TestRepos.git(repository.getDirectory(), "rev-parse", "HEAD"), TestRepos.git(remote, "rev-parse", "master"));
+
+        TestRepos.git(other, "pull", "-q", "--no-rebase", "origin", "master");
+        TestRepos.commit(other, "messages.yml", "m: changed\n");
+        TestRepos.git(other, "push", "-q", "origin", "master");
+        assertTrue(RepoService.syncRepository(repository, Config.Scenario.ALL));
+        assertEquals("m: changed\n", TestRepos.read(repository.getDirectory(), "messages.yml"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void startupDisablesAutoGcOfExistingRepos(BackendType type) throws IOException {
+        Repository repository = TestRepos.repository(this.root, "plugin", TestRepos.bareRemote(this.root), type).toBuilder().remote("empty").build();
+        Config.publish(Config.builder().repository(repository).bootstrapEnabled(false).maintenanceInterval(0L).build());
+        RepoService.createReposWhereNeeded(this.root.toFile());
+
+        // Maintenance turned on after the repository was created.
+        Config.publish(Config.builder().repository(repository).bootstrapEnabled(false).maintenanceInterval(24L).build());
+        RepoService.linkRemotesAndLocals();
+        assertEquals("0", TestRepos.git(repository.getDirectory(), "config", "gc.auto"));
+    }
+}
@@ -0,0 +1,67 @@
+package gitsync;
+
+import gitsync.backend.BackendType;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeManifestTest {
+    @TempDir
+    Path root;
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void ignoredFilesDoNotCountAsChanges(BackendType type) throws IOException {
+        Repository repository = TestRepos.repository(this.root, "plugin", TestRepos.bareRemote(this.root), type);
+        File directory = repository.getDirectory();
+        Config.publish(Config.builder().repository(repository).bootstrapEnabled(false).exclusionMaxFileSize(1L).exclusionPatterns(List.of("*.db", "logs/")).build());
+        RepoService.createReposWhereNeeded(this.root.toFile());
+        TestRepos.commit(directory, "logs/keep.log", "kept\n");
+        TestRepos.write(directory, "config.yml", "a: 1\n");
+
+        ChangeManifest manifest = ChangeManifest.of(repository);
+        assertTrue(manifest.refresh());
+        assertFalse(manifest.refresh());
+
+        TestRepos.write(directory, "players.db", "db\n");
+        TestRepos.write(directory, "logs/latest.log", "new\n");
+        TestRepos.write(directory, "backup.bin", "x".repeat(2 * 1024 * 1024));
+        assertFalse(manifest.refresh());
+
+        // Git tracks it, so changes to it are committed even though logs/ is excluded.
+        TestRepos.write(directory, "logs/keep.log", "changed\n");
+        assertTrue(manifest.refresh());
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void racyWritesAreNotTrusted(BackendType type) throws IOException {
+        Repository repository = TestRepos.repository(this.root, "plugin", TestRepos.bareRemote(this.root), type);
+        File directory = repository.getDirectory();
+        Config.publish(Config.builder().repository(repository).bootstrapEnabled(false).build());
+        RepoService.createReposWhereNeeded(this.root.toFile());
+        Path config = directory.toPath().resolve("config.yml");
+        // Modified in the same timestamp tick as the scans, size and time alone cannot tell the writes apart.
+        FileTime tick = FileTime.fromMillis(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1L));
+        TestRepos.write(directory, "config.yml", "a: 1\n");
+        Files.setLastModifiedTime(config, tick);
+
+        ChangeManifest manifest = ChangeManifest.of(repository);
+        assertTrue(manifest.refresh());
+        TestRepos.write(directory, "config.yml", "a: 2\n");
+        Files.setLastModifiedTime(config, tick);
+        assertTrue(manifest.refresh());
+        assertFalse(manifest.refresh());
+    }
+}
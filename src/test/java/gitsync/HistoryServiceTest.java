@@ -0,0 +1,71 @@
+package gitsync;
+
+import gitsync.backend.BackendType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryServiceTest {
+    private static final long MONTH_AGO = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - TimeUnit.DAYS.toSeconds(30);
+
+    @TempDir
+    Path root;
+
+    /**
+     * @return Remote holding four server updates made a month ago.
+     */
+    private File oldServerUpdates() throws IOException {
+        File remote = TestRepos.bareRemote(this.root);
+        File other = TestRepos.clone(this.root, "other", remote);
+        for (int i = 0; i < 4; i++) {
+            TestRepos.commit(other, "config.yml", String.format("a: %d%n", i), RepoService.SERVER_COMMIT_TO_MAKE, MONTH_AGO + i);
+        }
+        TestRepos.git(other, "push", "-q", "origin", "master");
+        return remote;
+    }
+
+    private Repository bootstrap(File remote, BackendType type, int depth) throws IOException {
+        Repository repository = TestRepos.repository(this.root, "plugin", remote, type);
+        Config.publish(Config.builder().repository(repository).bootstrapEnabled(true).bootstrapDepth(depth).historySquashAfter(7L).build());
+        RepoService.createReposWhereNeeded(this.root.toFile());
+        RepoService.linkRemotesAndLocals();
+        return repository;
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void squashesOldServerUpdatesIntoOne(BackendType type) throws IOException {
+        File remote = this.oldServerUpdates();
+        Repository repository = this.bootstrap(remote, type, 0);
+
+        HistoryService.compact(repository);
+        assertEquals("1", TestRepos.git(remote, "rev-list", "--count", "master"));
+        assertEquals("a: 3", TestRepos.git(remote, "show", "master:config.yml"));
+    }
+
+    @Test
+    void leavesShallowClonesAlone() throws IOException {
+        File remote = this.oldServerUpdates();
+        Repository repository = this.bootstrap(remote, BackendType.CLI, 1);
+        assertTrue(new File(repository.getDirectory(), ".git/shallow").exists());
+        // The commit at the shallow boundary has no parents here, the old server updates after it would be squashed into a new root.
+        for (int i = 4; i < 6; i++) {
+            TestRepos.commit(repository.getDirectory(), "config.yml", String.format("a: %d%n", i), RepoService.SERVER_COMMIT_TO_MAKE, MONTH_AGO + i);
+        }
+        TestRepos.git(repository.getDirectory(), "push", "-q", "origin", "master");
+        String before = TestRepos.git(remote, "rev-parse", "master");
+
+        HistoryService.compact(repository);
+        assertEquals(before, TestRepos.git(remote, "rev-parse", "master"));
+        assertEquals("6", TestRepos.git(remote, "rev-list", "--count", "master"));
+    }
+}
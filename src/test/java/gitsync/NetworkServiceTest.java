@@ -0,0 +1,88 @@
+package gitsync;
+
+import gitsync.backend.BackendType;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetworkServiceTest {
+    @TempDir
+    Path root;
+    private final Map<String, Repository> nodes = new HashMap<>();
+
+    /**
+     * Publishes the config of the node, as if the code ran on its server. Node c is the coordinator.
+     */
+    private Repository node(String id) {
+        Repository repository = this.nodes.get(id);
+        Config.publish(Config.builder().repository(repository).networkNode(id).networkCoordinator(id.equals("c")).build());
+        return repository;
+    }
+
+    private File setUp(BackendType type) throws IOException {
+        File remote = TestRepos.bareRemote(this.root);
+        for (String id : List.of("a", "b", "c")) {
+            Repository repository = TestRepos.repository(this.root, id, remote, type);
+            TestRepos.write(repository.getDirectory(), id + ".yml", String.format("node: %s%n", id));
+            this.nodes.put(id, repository);
+            this.node(id);
+            RepoService.createReposWhereNeeded(this.root.toFile());
+            RepoService.linkRemotesAndLocals();
+        }
+        return remote;
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void nodeBranchesAreMergedIntoMaster(BackendType type) throws IOException {
+        File remote = this.setUp(type);
+        for (String id : List.of("a", "b", "c")) {
+            RepoService.syncRepository(this.node(id), Config.Scenario.FORCE);
+        }
+        assertEquals("server/a\nserver/b\nserver/c", TestRepos.git(remote, "branch", "--format=%(refname:short)", "--list", "server/*"));
+
+        assertTrue(NetworkService.merge(this.node("c")));
+        assertEquals("a.yml\nb.yml\nc.yml", TestRepos.git(remote, "ls-tree", "--name-only", "master"));
+
+        RepoService.syncRepository(this.node("a"), Config.Scenario.FORCE);
+        assertEquals("node: b\n", TestRepos.read(this.nodes.get("a").getDirectory(), "b.yml"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void conflictingBranchIsAbortedAndSkipped(BackendType type) throws IOException {
+        File remote = this.setUp(type);
+        for (String id : List.of("a", "b", "c")) {
+            RepoService.syncRepository(this.node(id), Config.Scenario.FORCE);
+        }
+        assertTrue(NetworkService.merge(this.node("c")));
+        for (String id : List.of("a", "b")) {
+            RepoService.syncRepository(this.node(id), Config.Scenario.FORCE);
+        }
+
+        TestRepos.write(this.nodes.get("a").getDirectory(), "shared.yml", "value: a\n");
+        TestRepos.write(this.nodes.get("b").getDirectory(), "shared.yml", "value: b\n");
+        for (String id : List.of("a", "b")) {
+            RepoService.syncRepository(this.node(id), Config.Scenario.FORCE);
+        }
+        Repository coordinator = this.node("c");
+        assertTrue(NetworkService.merge(coordinator));
+
+        // server/a is merged first, server/b conflicts with it and waits for someone to merge it by hand.
+        assertEquals("value: a", TestRepos.git(remote, "show", "master:shared.yml"));
+        assertFalse(new File(coordinator.getDirectory(), ".git/MERGE_HEAD").exists());
+        assertEquals("", TestRepos.git(coordinator.getDirectory(), "status", "--porcelain"));
+        assertEquals(TestRepos.git(coordinator.getDirectory(), "rev-parse", "HEAD"), TestRepos.git(remote, "rev-parse", "master"));
+    }
+}
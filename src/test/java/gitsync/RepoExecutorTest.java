@@ -0,0 +1,89 @@
+package gitsync;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepoExecutorTest {
+    @TempDir
+    Path root;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @return Scoped repository of a plugin of the monorepo in the root, like {@code GitSync.loadMonorepo} builds them.
+     */
+    private Repository plugin(String name) {
+        return Repository.builder().name(name).enabled(true).remote("empty").directory(this.root.toFile()).paths(List.of(name)).scoped(true).build();
+    }
+
+    @Test
+    void pluginsOfOneMonorepoAreNotMerged() throws Exception {
+        Repository foo = this.plugin("foo");
+        Repository bar = this.plugin("bar");
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = RepoExecutor.enqueue(foo, "sync", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "running";
+        }, this.executor);
+
+        CompletableFuture<String> pullFoo = RepoExecutor.enqueue(foo, "pull", () -> "foo", this.executor);
+        CompletableFuture<String> pullBar = RepoExecutor.enqueue(bar, "pull", () -> "bar", this.executor);
+        CompletableFuture<String> pullBarAgain = RepoExecutor.enqueue(bar, "pull", () -> "bar again", this.executor);
+        release.countDown();
+
+        assertEquals("running", running.get(10L, TimeUnit.SECONDS));
+        assertNotSame(pullFoo, pullBar);
+        assertEquals("foo", pullFoo.get(10L, TimeUnit.SECONDS));
+        assertEquals("bar", pullBar.get(10L, TimeUnit.SECONDS));
+        // The same operation of the same plugin right behind a waiting one is still merged into it.
+        assertSame(pullBar, pullBarAgain);
+    }
+
+    @Test
+    void runningTaskKeepsItsConfig() throws Exception {
+        Repository foo = this.plugin("foo");
+        Config started = Config.builder().repository(foo).timeoutLocal(11L).build();
+        Config.publish(started);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch reloaded = new CountDownLatch(1);
+        CompletableFuture<Config> seen = RepoExecutor.enqueue(foo, "sync", () -> {
+            running.countDown();
+            try {
+                reloaded.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Config.getInstance();
+        }, this.executor);
+
+        assertTrue(running.await(10L, TimeUnit.SECONDS));
+        Config published = Config.builder().repository(foo).timeoutLocal(22L).build();
+        Config.publish(published);
+        reloaded.countDown();
+
+        assertSame(started, seen.get(10L, TimeUnit.SECONDS));
+        assertSame(published, Config.getInstance());
+    }
+}
@@ -0,0 +1,55 @@
+package gitsync;
+
+import gitsync.backend.BackendType;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SnapshotStageTest {
+    private static final String LARGE = "x".repeat(2 * 1024 * 1024);
+
+    @TempDir
+    Path root;
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void trackedFilesSurviveExclusions(BackendType type) throws IOException {
+        File remote = TestRepos.bareRemote(this.root);
+        Repository repository = TestRepos.repository(this.root, "plugin", remote, type);
+        File directory = repository.getDirectory();
+        Config.publish(Config.builder().repository(repository).bootstrapEnabled(false).stagingEnabled(true).exclusionMaxFileSize(1L).exclusionPatterns(List.of("*.db", "logs/")).build());
+        RepoService.createReposWhereNeeded(this.root.toFile());
+        RepoService.linkRemotesAndLocals();
+
+        // Tracked before the exclusions applied to them, e.g. added by hand.
+        TestRepos.commit(directory, "config.yml", "a: 1\n");
+        TestRepos.commit(directory, "logs/keep.log", "kept\n");
+        TestRepos.commit(directory, "world.bin", LARGE);
+        TestRepos.write(directory, "logs/latest.log", "new\n");
+        TestRepos.write(directory, "players.db", "db\n");
+        TestRepos.write(directory, "backup.bin", LARGE);
+
+        RepoService.syncRepository(repository, Config.Scenario.ALL);
+        assertEquals(List.of(".gitignore", "config.yml", "logs/keep.log", "world.bin"), remoteFiles(remote));
+
+        TestRepos.write(directory, "logs/keep.log", "changed\n");
+        TestRepos.write(directory, "config.yml", "a: 2\n");
+        RepoService.syncRepository(repository, Config.Scenario.ALL);
+        assertEquals(List.of(".gitignore", "config.yml", "logs/keep.log", "world.bin"), remoteFiles(remote));
+        assertEquals("changed", TestRepos.git(remote, "show", "master:logs/keep.log"));
+        assertEquals("a: 2", TestRepos.git(remote, "show", "master:config.yml"));
+        assertEquals(LARGE.length(), Files.size(directory.toPath().resolve("world.bin")));
+    }
+
+    private static List<String> remoteFiles(File remote) {
+        return List.of(TestRepos.git(remote, "ls-tree", "-r", "--name-only", "master").split("\n"));
+    }
+}
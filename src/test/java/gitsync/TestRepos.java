@@ -0,0 +1,124 @@
+package gitsync;
+
+import gitsync.backend.BackendType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Repositories in temporary directories for tests, set up with the git CLI so both backends are tested against the same state.
+ * Names are unique per test, manifests and staging directories are kept by repository name.
+ */
+public class TestRepos {
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    static {
+        try {
+            System.setProperty("gitsync.dataFolder", Files.createTempDirectory("gitsync-data").toString());
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private TestRepos() {
+    }
+
+    /**
+     * @return Bare repository with master as its default branch, to be used as a file:// remote.
+     */
+    public static File bareRemote(Path root) {
+        File bare = root.resolve("remote.git").toFile();
+        git(root.toFile(), "init", "-q", "--bare", "-b", "master", bare.getPath());
+        return bare;
+    }
+
+    /**
+     * @return Repository with its own directory under the root and origin pointing to the remote, no git set up yet.
+     */
+    public static Repository repository(Path root, String name, File remote, BackendType backend) throws IOException {
+        File directory = Files.createDirectories(root.resolve(name)).toFile();
+        return Repository.builder()
+                .name(String.format("%s-%d", name, COUNTER.incrementAndGet()))
+                .enabled(true)
+                .remote("file://" + remote.getAbsolutePath())
+                .directory(directory)
+                .backend(backend)
+                .build();
+    }
+
+    /**
+     * @return Clone of the remote with a committer set, to change the remote from outside like another server would.
+     */
+    public static File clone(Path root, String name, File remote) {
+        File directory = root.resolve(name).toFile();
+        git(root.toFile(), "clone", "-q", "file://" + remote.getAbsolutePath(), directory.getPath());
+        git(directory, "config", "user.name", "Test");
+        git(directory, "config", "user.email", "test@example.com");
+        git(directory, "checkout", "-q", "-B", "master");
+        return directory;
+    }
+
+    /**
+     * Writes the file and commits it with the git CLI.
+     */
+    public static void commit(File directory, String path, String content) throws IOException {
+        write(directory, path, content);
+        git(directory, "add", path);
+        git(directory, "commit", "-q", "-m", String.format("change %s", path));
+    }
+
+    /**
+     * Writes the file and commits it with the git CLI, authored and committed at the given time.
+     */
+    public static void commit(File directory, String path, String content, String message, long epochSeconds) throws IOException {
+        write(directory, path, content);
+        git(directory, "add", path);
+        String date = String.format("@%d +0000", epochSeconds);
+        run(directory, Map.of("GIT_AUTHOR_DATE", date, "GIT_COMMITTER_DATE", date), "commit", "-q", "-m", message);
+    }
+
+    public static void write(File directory, String path, String content) throws IOException {
+        Path file = directory.toPath().resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    public static String read(File directory, String path) throws IOException {
+        return Files.readString(directory.toPath().resolve(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs git and fails the test if it does not succeed.
+     * @return Output of git, trimmed.
+     */
+    public static String git(File directory, String... args) {
+        return run(directory, Map.of(), args);
+    }
+
+    private static String run(File directory, Map<String, String> environment, String... args) {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(args));
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command).directory(directory).redirectErrorStream(true);
+            builder.environment().putAll(environment);
+            Process process = builder.start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (process.waitFor() != 0) {
+                throw new AssertionError(String.format("%s failed: %s", String.join(" ", command), output));
+            }
+            return output;
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package gitsync.backend;
+
+import gitsync.Config;
+import gitsync.Repository;
+import gitsync.TestRepos;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Both backends have to report the same outcome for the same situation, sync decides what to do next by it.
+ */
+class GitBackendTest {
+    @TempDir
+    Path root;
+
+    @BeforeAll
+    static void publishConfig() {
+        Config.publish(Config.builder().build());
+    }
+
+    private Repository setUp(BackendType type, File remote) throws IOException {
+        Repository repository = TestRepos.repository(this.root, "local", remote, type);
+        GitBackend backend = type.getBackend();
+        assertTrue(backend.init(repository).isSuccess());
+        backend.configure(repository, "user.name", "GitSync");
+        backend.configure(repository, "user.email", "gitsync@example.com");
+        assertTrue(backend.addRemote(repository, "origin", repository.getRemote()).isSuccess());
+        return repository;
+    }
+
+    private static GitOutcome commit(Repository repository, String path, String content) throws IOException {
+        GitBackend backend = repository.getBackend().getBackend();
+        TestRepos.write(repository.getDirectory(), path, content);
+        backend.add(repository, repository.getDirectory());
+        return backend.commit(repository, "'[server update]'", repository.getDirectory(), false).getOutcome();
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void commitOutcomes(BackendType type) throws IOException {
+        Repository repository = this.setUp(type, TestRepos.bareRemote(this.root));
+
+        assertEquals(GitOutcome.COMMITTED, commit(repository, "config.yml", "a: 1\n"));
+        assertEquals(GitOutcome.NOTHING_TO_COMMIT, commit(repository, "config.yml", "a: 1\n"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void pullOutcomes(BackendType type) throws IOException {
+        File remote = TestRepos.bareRemote(this.root);
+        Repository repository = this.setUp(type, remote);
+        GitBackend backend = type.getBackend();
+        commit(repository, "config.yml", "a: 1\n");
+
+        assertEquals(GitOutcome.NO_REMOTE_BRANCH, backend.pull(repository).getOutcome());
+
+        assertEquals(GitOutcome.PUSHED, backend.push(repository, "origin", "master", true, false).getOutcome());
+        File other = TestRepos.clone(this.root, "other", remote);
+        TestRepos.commit(other, "other.yml", "b: 1\n");
+        TestRepos.git(other, "push", "-q", "origin", "master");
+        assertEquals(GitOutcome.FAST_FORWARDED, backend.pull(repository).getOutcome());
+        assertEquals("b: 1\n", TestRepos.read(repository.getDirectory(), "other.yml"));
+
+        assertEquals(GitOutcome.UP_TO_DATE, backend.pull(repository).getOutcome());
+
+        TestRepos.commit(other, "other.yml", "b: 2\n");
+        TestRepos.git(other, "push", "-q", "origin", "master");
+        commit(repository, "config.yml", "a: 2\n");
+        assertEquals(GitOutcome.MERGED, backend.pull(repository).getOutcome());
+        assertEquals(GitOutcome.COMMITTED, backend.commit(repository, "'[merged]'", repository.getDirectory(), false).getOutcome());
+        assertEquals(GitOutcome.PUSHED, backend.push(repository, "origin", "master", false, false).getOutcome());
+
+        TestRepos.git(other, "pull", "-q", "--no-rebase", "origin", "master");
+        TestRepos.commit(other, "config.yml", "a: other\n");
+        TestRepos.git(other, "push", "-q", "origin", "master");
+        commit(repository, "config.yml", "a: local\n");
+        assertEquals(GitOutcome.MERGE_CONFLICT, backend.pull(repository).getOutcome());
+        assertTrue(backend.abortMerge(repository).isSuccess());
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void pushOutcomes(BackendType type) throws IOException {
+        File remote = TestRepos.bareRemote(this.root);
+        Repository repository = this.setUp(type, remote);
+        GitBackend backend = type.getBackend();
+        commit(repository, "config.yml", "a: 1\n");
+
+        assertEquals(GitOutcome.PUSHED, backend.push(repository, "origin", "master", true, false).getOutcome());
+        assertEquals(GitOutcome.UP_TO_DATE, backend.push(repository, "origin", "master", false, false).getOutcome());
+
+        File other = TestRepos.clone(this.root, "other", remote);
+        TestRepos.commit(other, "other.yml", "b: 1\n");
+        TestRepos.git(other, "push", "-q", "origin", "master");
+        commit(repository, "config.yml", "a: 2\n");
+        assertEquals(GitOutcome.REJECTED, backend.push(repository, "origin", "master", false, false).getOutcome());
+        assertEquals(GitOutcome.FORCE_PUSHED, backend.push(repository, "origin", "master", false, true).getOutcome());
+        assertEquals(backend.resolve(repository, "HEAD"), TestRepos.git(remote, "rev-parse", "master"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void forcePushToNodeBranchNamesIt(BackendType type) throws IOException {
+        Repository repository = this.setUp(type, TestRepos.bareRemote(this.root));
+        GitBackend backend = type.getBackend();
+        commit(repository, "config.yml", "a: 1\n");
+        backend.push(repository, "origin", "server/a", false, true);
+        TestRepos.write(repository.getDirectory(), "config.yml", "a: 2\n");
+        backend.add(repository, repository.getDirectory());
+        assertEquals(GitOutcome.COMMITTED, backend.commit(repository, "'[server update]'", repository.getDirectory(), true).getOutcome());
+
+        GitResult result = backend.push(repository, "origin", "server/a", false, true);
+        assertEquals(GitOutcome.FORCE_PUSHED, result.getOutcome());
+        assertTrue(result.getOutput().stream().anyMatch((line) -> line.contains("forced update") && line.contains("server/a")), String.join("\n", result.getOutput()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(BackendType.class)
+    void abortMergeKeepsUnrelatedChanges(BackendType type) throws IOException {
+        File remote = TestRepos.bareRemote(this.root);
+        Repository repository = this.setUp(type, remote);
+        GitBackend backend = type.getBackend();
+        commit(repository, "config.yml", "a: 1\n");
+        commit(repository, "players.yml", "p: 1\n");
+        backend.push(repository, "origin", "master", true, false);
+
+        File other = TestRepos.clone(this.root, "other", remote);
+        TestRepos.commit(other, "config.yml", "a: other\n");
+        TestRepos.commit(other, "added.yml", "c: 1\n");
+        TestRepos.git(other, "push", "-q", "origin", "master");
+        commit(repository, "config.yml", "a: local\n");
+        TestRepos.write(repository.getDirectory(), "players.yml", "p: unsaved\n");
+        TestRepos.write(repository.getDirectory(), "untracked.yml", "u: 1\n");
+
+        assertEquals(GitOutcome.MERGE_CONFLICT, backend.pull(repository).getOutcome());
+        assertTrue(backend.abortMerge(repository).isSuccess());
+
+        File directory = repository.getDirectory();
+        assertFalse(new File(directory, ".git/MERGE_HEAD").exists());
+        assertEquals("a: local\n", TestRepos.read(directory, "config.yml"));
+        assertFalse(new File(directory, "added.yml").exists());
+        assertEquals("p: unsaved\n", TestRepos.read(directory, "players.yml"));
+        assertEquals("u: 1\n", TestRepos.read(directory, "untracked.yml"));
+        assertEquals("M players.yml\n?? untracked.yml", TestRepos.git(directory, "status", "--porcelain"));
+    }
+}